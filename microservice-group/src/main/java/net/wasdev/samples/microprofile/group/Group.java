@@ -30,6 +30,7 @@ public class Group {
   public static final String JSON_KEY_GROUP_NAME = "name";
   public static final String JSON_KEY_MEMBERS_LIST = "members";
   public static final String JSON_KEY_GROUPS = "groups";
+  public static final String JSON_KEY_MEMBER_PROFILES = "memberProfiles";
 
   private String id;
   private String name;
@@ -51,6 +52,19 @@ public class Group {
     }
   }
 
+  /**
+   * Create a group from its fields, as {@link GroupDecoder} reads them.
+   *
+   * @param id The group ID
+   * @param name The group name
+   * @param members The user IDs of the members
+   */
+  Group(String id, String name, String[] members) {
+    this.id = id;
+    this.name = name;
+    this.members = members;
+  }
+
   /**
    * Create a group based on a JSON Object
    *
@@ -79,6 +93,24 @@ public class Group {
    * @return - A JSON string with the content of this group
    */
   public String getJson() {
+    return getJsonObject().toString();
+  }
+
+  /**
+   * Create a JSON object based on the content of this group
+   *
+   * @return - A JSON object with the content of this group
+   */
+  public JsonObject getJsonObject() {
+    return getJsonObjectBuilder().build();
+  }
+
+  /**
+   * Create a JSON object builder with the content of this group, so that more fields can be added.
+   *
+   * @return - A JSON object builder with the content of this group
+   */
+  public JsonObjectBuilder getJsonObjectBuilder() {
     JsonObjectBuilder group = Json.createObjectBuilder();
     group.add(JSON_KEY_GROUP_ID, id);
     group.add(JSON_KEY_GROUP_NAME, name);
@@ -89,7 +121,15 @@ public class Group {
     }
     group.add(JSON_KEY_MEMBERS_LIST, membersArray.build());
 
-    return group.build().toString();
+    return group;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String[] getMembers() {
+    return members;
   }
 
   /**
@@ -13,12 +13,14 @@ package net.wasdev.samples.microprofile.group;
 import java.util.HashSet;
 import java.util.Set;
 import javax.ws.rs.core.Application;
+import net.wasdev.samples.microprofile.mongo.DocumentViewWriter;
 
 public class GroupApplication extends Application {
   @Override
   public Set<Class<?>> getClasses() {
     Set<Class<?>> classes = new HashSet<Class<?>>();
     classes.add(GroupResource.class);
+    classes.add(DocumentViewWriter.class);
     return classes;
   }
 }
@@ -0,0 +1,221 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.group;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCallback;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BasicBSONDecoder;
+import org.bson.EmptyBSONCallback;
+import org.bson.types.ObjectId;
+
+/**
+ * Decodes group documents straight into {@link Group}s.
+ *
+ * <p>The driver's default decoder builds a BasicDBObject for each document, and a BasicDBList for
+ * its members, only for Group to copy the fields back out of them. This decoder collects the fields
+ * as the BSON is read. Set it on a cursor with {@code
+ * cursor.setDecoderFactory(GroupDecoder.FACTORY)}, and get the Group from each document that the
+ * cursor returns with {@link #toGroup}. Fields that a Group does not have are skipped.
+ */
+public class GroupDecoder extends BasicBSONDecoder implements DBDecoder {
+
+  public static final DBDecoderFactory FACTORY = GroupDecoder::new;
+
+  /**
+   * Get the group from a document. Documents that were not read with this decoder are converted the
+   * usual way.
+   */
+  public static Group toGroup(DBObject dbo) {
+    if (dbo instanceof DecodedGroup) {
+      return ((DecodedGroup) dbo).group;
+    }
+    return new Group(dbo);
+  }
+
+  @Override
+  public DBCallback getDBCallback(DBCollection collection) {
+    return new GroupCallback();
+  }
+
+  @Override
+  public DBObject decode(byte[] bytes, DBCollection collection) {
+    GroupCallback callback = new GroupCallback();
+    decode(bytes, callback);
+    return (DBObject) callback.get();
+  }
+
+  @Override
+  public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+    GroupCallback callback = new GroupCallback();
+    decode(in, callback);
+    return (DBObject) callback.get();
+  }
+
+  /**
+   * The document handed back to the driver. It only carries the group, except when a query fails
+   * and the server returns an error document instead: the error fields are kept, so that the driver
+   * can report the error.
+   */
+  private static class DecodedGroup extends BasicDBObject {
+    private static final long serialVersionUID = 1L;
+
+    private transient Group group;
+  }
+
+  /** Collects the fields of the group as the decoder reads them. */
+  private static class GroupCallback extends EmptyBSONCallback implements DBCallback {
+    /** The nesting level: 1 for the fields of the group, 2 for its members. */
+    private int depth = 0;
+
+    private boolean inMembers = false;
+    private DecodedGroup decoded;
+    private String id;
+    private String name;
+    private List<String> members;
+
+    @Override
+    public void reset() {
+      depth = 0;
+      inMembers = false;
+      decoded = null;
+    }
+
+    @Override
+    public Object get() {
+      return decoded;
+    }
+
+    @Override
+    public void objectStart() {
+      decoded = new DecodedGroup();
+      id = null;
+      name = null;
+      members = new ArrayList<String>();
+      depth = 1;
+    }
+
+    @Override
+    public void objectStart(String name) {
+      depth++;
+    }
+
+    @Override
+    public Object objectDone() {
+      if (depth == 1) {
+        decoded.group = new Group(id, name, members.toArray(new String[members.size()]));
+      }
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void arrayStart(String name) {
+      depth++;
+      if (depth == 2) {
+        inMembers = Group.JSON_KEY_MEMBERS_LIST.equals(name);
+      }
+    }
+
+    @Override
+    public Object arrayDone() {
+      if (depth == 2) {
+        inMembers = false;
+      }
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void gotObjectId(String name, ObjectId id) {
+      if (depth == 1 && Group.DB_ID.equals(name)) {
+        this.id = id.toString();
+      }
+    }
+
+    @Override
+    public void gotString(String name, String value) {
+      if (depth == 1) {
+        if (Group.JSON_KEY_GROUP_NAME.equals(name)) {
+          this.name = value;
+        } else if ("$err".equals(name)) {
+          decoded.put(name, value);
+        }
+      } else if (depth == 2 && inMembers) {
+        members.add(value);
+      }
+    }
+
+    @Override
+    public void gotInt(String name, int value) {
+      if (depth == 1 && "code".equals(name)) {
+        decoded.put(name, value);
+      }
+    }
+
+    // The group has no fields of the other types, so they are skipped.
+
+    @Override
+    public void gotNull(String name) {}
+
+    @Override
+    public void gotUndefined(String name) {}
+
+    @Override
+    public void gotMinKey(String name) {}
+
+    @Override
+    public void gotMaxKey(String name) {}
+
+    @Override
+    public void gotBoolean(String name, boolean value) {}
+
+    @Override
+    public void gotDouble(String name, double value) {}
+
+    @Override
+    public void gotLong(String name, long value) {}
+
+    @Override
+    public void gotDate(String name, long millis) {}
+
+    @Override
+    public void gotSymbol(String name, String symbol) {}
+
+    @Override
+    public void gotRegex(String name, String pattern, String flags) {}
+
+    @Override
+    public void gotTimestamp(String name, int time, int increment) {}
+
+    @Override
+    public void gotDBRef(String name, String namespace, ObjectId id) {}
+
+    @Override
+    public void gotBinary(String name, byte type, byte[] data) {}
+
+    @Override
+    public void gotUUID(String name, long part1, long part2) {}
+
+    @Override
+    public void gotCode(String name, String code) {}
+
+    @Override
+    public void gotCodeWScope(String name, String code, Object scope) {}
+  }
+}
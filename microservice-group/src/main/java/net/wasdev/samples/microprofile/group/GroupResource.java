@@ -15,12 +15,26 @@ import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.json.stream.JsonGenerator;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -30,18 +44,50 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import net.wasdev.samples.microprofile.mongo.DocumentView;
+import net.wasdev.samples.microprofile.mongo.RawDocument;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
 @Path("groups")
 @RequestScoped
 public class GroupResource {
+  private static final String clazz = GroupResource.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The value of the expand query parameter that adds member profiles to groups. */
+  public static final String EXPAND_MEMBERS = "members";
+
+  /** The key of the list of group IDs in a lookup request. */
+  private static final String JSON_KEY_IDS = "ids";
+
+  /** The key of the ID to start the next page after. */
+  private static final String JSON_KEY_NEXT = "next";
+
+  /** The most groups that can be returned in one page. */
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  /** The most groups that can be looked up in one request. */
+  private static final int MAX_LOOKUP_IDS = 1000;
+
   /** Access to Mongo DB */
   @Inject private MongoAccess mongo;
 
+  /** Looks up the profiles of group members. */
+  @Inject private UserLookup userLookup;
+
+  /** Tells the occasion service when a cached record changes. */
+  @Inject private OccasionCacheInvalidator occasionCacheInvalidator;
+
+  /** The headers of the current request. */
+  @Context private HttpHeaders httpHeaders;
+
   public DBCollection getGroupCollection() {
     DB groupsDB = mongo.getMongoDB();
     return groupsDB.getCollection(Group.DB_COLLECTION_NAME);
@@ -86,7 +132,7 @@ public class GroupResource {
   @GET
   @Path("{id}")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getGroupInfo(@PathParam("id") String id) {
+  public Response getGroupInfo(@PathParam("id") String id, @QueryParam("expand") String expand) {
 
     // Validate the JWT. At this point, anyone can get a group info if they
     // have a valid JWT.
@@ -109,8 +155,24 @@ public class GroupResource {
     }
 
     // Query Mongo for group with specified id
-    BasicDBObject group = (BasicDBObject) getGroupCollection().findOne(new ObjectId(id));
+    BasicDBObject query = new BasicDBObject(Group.DB_ID, new ObjectId(id));
+    if (!EXPAND_MEMBERS.equals(expand)) {
+      // Write the group straight from the BSON, without building a Group first.
+      RawDocument group = RawDocument.findOne(getGroupCollection(), query, null);
+      if (group == null) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The group was not found")
+            .build();
+      }
+      DocumentView groupView =
+          new DocumentView(group)
+              .include(Group.DB_ID, Group.JSON_KEY_GROUP_NAME, Group.JSON_KEY_MEMBERS_LIST)
+              .rename(Group.DB_ID, Group.JSON_KEY_GROUP_ID);
+      return Response.ok(groupView, MediaType.APPLICATION_JSON).build();
+    }
 
+    DBObject group = getGroupCollection().findOne(query);
     if (group == null) {
       return Response.status(Status.BAD_REQUEST)
           .type(MediaType.TEXT_PLAIN)
@@ -118,16 +180,29 @@ public class GroupResource {
           .build();
     }
 
-    // Create a JSON payload with the group content
-    String responsePayload = (new Group(group)).getJson();
-
+    // Create a JSON payload with the group content and the member profiles.
+    Group foundGroup = new Group(group);
+    String responsePayload = expandMembers(Arrays.asList(foundGroup)).get(0).toString();
     return Response.ok().entity(responsePayload).build();
   }
 
+  /**
+   * Get the groups, or the groups that a user is a member of, in order of group ID.
+   *
+   * @param userId If set, only the groups that this user is a member of are returned.
+   * @param after If set, only the groups after the group with this ID are returned. This is the
+   *     value of "next" from the previous page.
+   * @param limit If greater than zero, the most groups to return. When the page is full, the
+   *     response contains a "next" field to pass as "after" to get the next page.
+   * @return The groups, each one as a JSON string.
+   */
   @GET
   @Path("/")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getGroups(@QueryParam("userId") String userId) {
+  public Response getGroups(
+      @QueryParam("userId") String userId,
+      @QueryParam("after") String after,
+      @QueryParam("limit") int limit) {
     // Validate the JWT. At this point, anyone can get a group list if they
     // have a valid JWT.
     try {
@@ -139,8 +214,7 @@ public class GroupResource {
           .build();
     }
 
-    DBCursor groupCursor = null;
-    BasicDBList groupList = new BasicDBList();
+    BasicDBObject queryObj = new BasicDBObject();
     if (userId != null) {
       if (!ObjectId.isValid(userId)) {
         return Response.status(Status.BAD_REQUEST)
@@ -148,20 +222,140 @@ public class GroupResource {
             .entity("The user id provided is not valid.")
             .build();
       }
+      queryObj.append(Group.JSON_KEY_MEMBERS_LIST, userId);
+    }
 
-      BasicDBObject queryObj = new BasicDBObject(Group.JSON_KEY_MEMBERS_LIST, userId);
-      groupCursor = getGroupCollection().find(queryObj);
-    } else {
-      groupCursor = getGroupCollection().find();
+    // Start after the last group of the previous page. Since the groups are
+    // sorted by ID, this uses the ID index rather than skipping documents.
+    if (after != null) {
+      if (!ObjectId.isValid(after)) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The group id to start after is not valid.")
+            .build();
+      }
+      queryObj.append(Group.DB_ID, new BasicDBObject("$gt", new ObjectId(after)));
+    }
+
+    if (limit < 0 || limit > MAX_PAGE_SIZE) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("The limit must be between 0 and " + MAX_PAGE_SIZE + ".")
+          .build();
+    }
+
+    DBCursor groupCursor =
+        getGroupCollection()
+            .find(queryObj)
+            .sort(new BasicDBObject(Group.DB_ID, 1))
+            .setDecoderFactory(GroupDecoder.FACTORY);
+    if (limit > 0) {
+      groupCursor.limit(limit);
+    }
+
+    // Write each group as it is read from the cursor, so that the whole list
+    // is never held in memory.
+    final DBCursor cursor = groupCursor;
+    StreamingOutput groups =
+        output -> {
+          try (DBCursor dbGroups = cursor) {
+            JsonGenerator generator = Json.createGenerator(output);
+            generator.writeStartObject().writeStartArray(Group.JSON_KEY_GROUPS);
+            int count = 0;
+            String lastId = null;
+            while (dbGroups.hasNext()) {
+              Group group = GroupDecoder.toGroup(dbGroups.next());
+              generator.write(group.getJson());
+              lastId = group.getId();
+              count++;
+            }
+            generator.writeEnd();
+            if (limit > 0 && count == limit) {
+              generator.write(JSON_KEY_NEXT, lastId);
+            }
+            generator.writeEnd();
+            generator.flush();
+          }
+        };
+
+    return Response.ok(groups, MediaType.APPLICATION_JSON).build();
+  }
+
+  /**
+   * Get a list of groups with one query.
+   *
+   * @param expand If "members", the public profiles of the members of each group are added to it.
+   * @param payload A JSON object containing an array of group IDs.
+   * @return The groups that were found. IDs that were not found are left out.
+   */
+  @POST
+  @Path("/lookup")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response lookupGroups(@QueryParam("expand") String expand, JsonObject payload) {
+    // Validate the JWT. At this point, anyone can get a group info if they
+    // have a valid JWT.
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    if (payload == null || !(payload.get(JSON_KEY_IDS) instanceof JsonArray)) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("The payload must contain an array of group IDs.")
+          .build();
+    }
+    JsonArray ids = payload.getJsonArray(JSON_KEY_IDS);
+    if (ids.size() > MAX_LOOKUP_IDS) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("At most " + MAX_LOOKUP_IDS + " groups can be looked up at once.")
+          .build();
+    }
+
+    // Check that the ids are valid mongo object ids. If not, the server will
+    // throw a 500
+    BasicDBList objectIds = new BasicDBList();
+    for (JsonValue id : ids) {
+      if (id.getValueType() != ValueType.STRING
+          || !ObjectId.isValid(((JsonString) id).getString())) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The group ID is not valid: " + id)
+            .build();
+      }
+      objectIds.add(new ObjectId(((JsonString) id).getString()));
     }
 
-    while (groupCursor.hasNext()) {
-      groupList.add((new Group(groupCursor.next()).getJson()));
+    // Query Mongo for all of the groups at once
+    List<Group> groups = new ArrayList<Group>();
+    try (DBCursor groupCursor =
+        getGroupCollection()
+            .find(new BasicDBObject(Group.DB_ID, new BasicDBObject("$in", objectIds)))
+            .setDecoderFactory(GroupDecoder.FACTORY)) {
+      while (groupCursor.hasNext()) {
+        groups.add(GroupDecoder.toGroup(groupCursor.next()));
+      }
     }
 
-    String responsePayload = (new BasicDBObject(Group.JSON_KEY_GROUPS, groupList)).toString();
+    JsonArrayBuilder groupArray = Json.createArrayBuilder();
+    if (EXPAND_MEMBERS.equals(expand)) {
+      for (JsonObject group : expandMembers(groups)) {
+        groupArray.add(group);
+      }
+    } else {
+      for (Group group : groups) {
+        groupArray.add(group.getJsonObject());
+      }
+    }
 
-    return Response.ok(responsePayload).build();
+    JsonObject response = Json.createObjectBuilder().add(Group.JSON_KEY_GROUPS, groupArray).build();
+    return Response.ok(response, MediaType.APPLICATION_JSON).build();
   }
 
   @DELETE
@@ -200,6 +394,7 @@ public class GroupResource {
 
     // Delete group
     getGroupCollection().remove(group);
+    occasionCacheInvalidator.invalidate(id, httpHeaders.getHeaderString(HttpHeaders.AUTHORIZATION));
 
     return Response.ok().build();
   }
@@ -244,10 +439,54 @@ public class GroupResource {
 
     // Update database with new group
     getGroupCollection().findAndModify(oldGroup, updatedGroup.getDBObject(true));
+    occasionCacheInvalidator.invalidate(id, httpHeaders.getHeaderString(HttpHeaders.AUTHORIZATION));
 
     return Response.ok().build();
   }
 
+  /**
+   * Add the public profiles of their members to some groups. The members of all of the groups are
+   * looked up together. If they cannot be looked up, the groups are returned with just their member
+   * IDs.
+   *
+   * @param groups The groups.
+   * @return The groups as JSON, in the same order, with their member profiles.
+   */
+  private List<JsonObject> expandMembers(List<Group> groups) {
+    Set<String> memberIds = new HashSet<String>();
+    for (Group group : groups) {
+      memberIds.addAll(Arrays.asList(group.getMembers()));
+    }
+
+    Map<String, JsonObject> profiles = null;
+    if (!memberIds.isEmpty()) {
+      try {
+        profiles =
+            userLookup.lookupUsers(
+                memberIds, httpHeaders.getHeaderString(HttpHeaders.AUTHORIZATION));
+      } catch (RuntimeException re) {
+        logger.log(Level.WARNING, "Could not look up the group members", re);
+      }
+    }
+
+    List<JsonObject> expandedGroups = new ArrayList<JsonObject>(groups.size());
+    for (Group group : groups) {
+      JsonObjectBuilder groupBuilder = group.getJsonObjectBuilder();
+      if (profiles != null || memberIds.isEmpty()) {
+        JsonArrayBuilder memberProfiles = Json.createArrayBuilder();
+        for (String member : group.getMembers()) {
+          JsonObject profile = profiles == null ? null : profiles.get(member);
+          if (profile != null) {
+            memberProfiles.add(profile);
+          }
+        }
+        groupBuilder.add(Group.JSON_KEY_MEMBER_PROFILES, memberProfiles);
+      }
+      expandedGroups.add(groupBuilder.build());
+    }
+    return expandedGroups;
+  }
+
   /** Do some basic checks on the JWT, until the MP-JWT annotations are ready. */
   private void validateJWT() throws JWTException {
     // Make sure the authorization header was present.  This check is somewhat
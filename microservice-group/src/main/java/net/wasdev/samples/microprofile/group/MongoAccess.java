@@ -10,40 +10,29 @@
 // ******************************************************************************
 package net.wasdev.samples.microprofile.group;
 
-import com.mongodb.DB;
-import com.mongodb.MongoClient;
-import java.net.UnknownHostException;
+import com.mongodb.BasicDBObject;
 import javax.enterprise.context.ApplicationScoped;
-import javax.inject.Inject;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
+import net.wasdev.samples.microprofile.mongo.AbstractMongoAccess;
+import net.wasdev.samples.microprofile.mongo.IndexReconciler;
 
 /** Holds the MongoDB instance that the JAX-RS resources will use. */
 @ApplicationScoped
-public class MongoAccess {
-  /** The mongoDB hostname */
-  @Inject
-  @ConfigProperty(name = "mongo.hostname")
-  private String mongoHostname;
+public class MongoAccess extends AbstractMongoAccess {
 
-  /** The mongoDB port */
-  @Inject
-  @ConfigProperty(name = "mongo.port")
-  private int mongoPort;
-
-  /** Cached DB reference used by all threads. */
-  private DB database = null;
-
-  /** Get a connection to Mongo */
-  public synchronized DB getMongoDB() {
-    if (database == null) {
-      try {
-        MongoClient client = new MongoClient(mongoHostname, mongoPort);
-        database = client.getDB("gifts-group");
-      } catch (UnknownHostException uhe) {
-        throw new RuntimeException(uhe);
-      }
-    }
+  public MongoAccess() {
+    super("gifts-group");
+  }
 
-    return database;
+  /**
+   * The groups of a user are found by member and listed in order of ID, which needs a multikey
+   * index on the members array and the ID.
+   */
+  @Override
+  protected void declareIndexes(IndexReconciler reconciler) {
+    // The groups of a user, a page at a time in order of ID.
+    reconciler.declare(
+        Group.DB_COLLECTION_NAME,
+        new BasicDBObject(Group.JSON_KEY_MEMBERS_LIST, 1).append(Group.DB_ID, 1),
+        null);
   }
 }
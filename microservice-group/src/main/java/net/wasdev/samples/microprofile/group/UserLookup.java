@@ -0,0 +1,176 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.group;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Looks up the profiles of group members in the user service.
+ *
+ * <p>The members of any number of groups are looked up together, with one call to the user
+ * service's bulk lookup for each {@link #MAX_IDS_PER_CALL} members, rather than one call per
+ * member.
+ *
+ * <p>The calls are made on the request thread, so they have a connect and a read timeout. A user
+ * service that does not answer in time fails the lookup, and the groups are returned with their
+ * member IDs instead.
+ */
+@ApplicationScoped
+public class UserLookup {
+  private static final String clazz = UserLookup.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The most IDs to send to the user service in one call. */
+  static final int MAX_IDS_PER_CALL = 500;
+
+  /** Client settings used when none are configured. */
+  static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+
+  static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+  /** The key of the user ID in a user profile. */
+  private static final String JSON_KEY_USER_ID = "id";
+
+  /** The URL of the user service. When it is not set, no profiles can be looked up. */
+  @Inject
+  @ConfigProperty(name = "user.service.url", defaultValue = "")
+  private String userServiceUrl;
+
+  /** How long to try to establish a connection to the user service before giving up. */
+  @Inject
+  @ConfigProperty(name = "user.lookup.connect.timeout.ms", defaultValue = "5000")
+  private int connectTimeoutMillis;
+
+  /** How long to wait for the user service to respond once connected. */
+  @Inject
+  @ConfigProperty(name = "user.lookup.read.timeout.ms", defaultValue = "10000")
+  private int readTimeoutMillis;
+
+  /** The client for the calls. Created on first use. */
+  private Client client = null;
+
+  /* following for jmock unit tests */
+  public void setUserServiceUrl(String userServiceUrl) {
+    this.userServiceUrl = userServiceUrl;
+  }
+
+  /* following for jmock unit tests */
+  public void setReadTimeoutMillis(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  /**
+   * Look up the public profiles of some users.
+   *
+   * @param ids The user IDs. Duplicates are looked up once.
+   * @param authorization The authorization header to pass to the user service.
+   * @return The profiles that were found, keyed by user ID.
+   * @throws IllegalStateException If the user service is not configured, or the lookup failed.
+   * @throws javax.ws.rs.ProcessingException If the user service could not be reached, or did not
+   *     respond in time.
+   */
+  public Map<String, JsonObject> lookupUsers(Collection<String> ids, String authorization) {
+    if (userServiceUrl == null || userServiceUrl.isEmpty()) {
+      throw new IllegalStateException("The user service URL is not configured.");
+    }
+
+    Map<String, JsonObject> profiles = new HashMap<String, JsonObject>();
+    List<String> uniqueIds = new ArrayList<String>(new LinkedHashSet<String>(ids));
+    for (int start = 0; start < uniqueIds.size(); start += MAX_IDS_PER_CALL) {
+      List<String> chunk =
+          uniqueIds.subList(start, Math.min(start + MAX_IDS_PER_CALL, uniqueIds.size()));
+      JsonArray users = callLookup(chunk, authorization);
+      for (JsonObject user : users.getValuesAs(JsonObject.class)) {
+        profiles.put(user.getString(JSON_KEY_USER_ID), user);
+      }
+    }
+    return profiles;
+  }
+
+  /** Make one call to the user service's bulk lookup. */
+  private JsonArray callLookup(List<String> ids, String authorization) {
+    JsonArrayBuilder idArray = Json.createArrayBuilder();
+    for (String id : ids) {
+      idArray.add(id);
+    }
+    String payload = Json.createObjectBuilder().add("ids", idArray).build().toString();
+
+    String url = userServiceUrl + "/lookup";
+    logger.log(Level.FINE, "Looking up {0} users at {1}", new Object[] {ids.size(), url});
+    Response response =
+        getClient()
+            .target(url)
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.AUTHORIZATION, authorization)
+            .post(Entity.entity(payload, MediaType.APPLICATION_JSON));
+    try {
+      String responsePayload = response.readEntity(String.class);
+      if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+        throw new IllegalStateException(
+            "The user lookup failed with status " + response.getStatus() + ": " + responsePayload);
+      }
+      try (JsonReader reader = Json.createReader(new StringReader(responsePayload))) {
+        return reader.readObject().getJsonArray("users");
+      }
+    } finally {
+      response.close();
+    }
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private synchronized Client getClient() {
+    if (client == null) {
+      // The client only reads these properties as a Long or a String, and ignores an Integer.
+      String connectTimeout =
+          String.valueOf(
+              connectTimeoutMillis > 0 ? connectTimeoutMillis : DEFAULT_CONNECT_TIMEOUT_MILLIS);
+      String readTimeout =
+          String.valueOf(readTimeoutMillis > 0 ? readTimeoutMillis : DEFAULT_READ_TIMEOUT_MILLIS);
+      client =
+          ClientBuilder.newBuilder()
+              .property("http.connection.timeout", connectTimeout)
+              .property("http.receive.timeout", readTimeout)
+              .property("com.ibm.ws.jaxrs.client.connection.timeout", connectTimeout)
+              .property("com.ibm.ws.jaxrs.client.receive.timeout", readTimeout)
+              .build();
+    }
+    return client;
+  }
+}
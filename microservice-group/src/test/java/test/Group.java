@@ -32,6 +32,7 @@ public class Group {
   public static final String JSON_KEY_GROUP_ID = "id";
   public static final String JSON_KEY_GROUP_NAME = "name";
   public static final String JSON_KEY_MEMBERS_LIST = "members";
+  public static final String JSON_KEY_MEMBER_PROFILES = "memberProfiles";
 
   public static final String JSON_KEY_GROUPS_FOR_USER_LIST = "groups";
 
@@ -22,7 +22,9 @@ import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.ws.rs.client.Client;
@@ -347,6 +349,158 @@ public class GroupResourceTest {
     makeConnection("GET", url, null, 400);
   }
 
+  /**
+   * Add some groups to the database. Call GET a page at a time. Verify that each group is returned
+   * once, in order.
+   */
+  @Test
+  public void testGetAllGroupsPaged() throws Exception {
+    System.out.println("\nStarting testGetAllGroupsPaged");
+
+    // Create groups in database
+    Group[] groups = new Group[3];
+    for (int i = 0; i < groups.length; i++) {
+      groups[i] = new Group(null, "pagedGroup" + i, new String[] {"12345"});
+      BasicDBObject dbGroup = groups[i].getDBObject(false);
+      db.getCollection(Group.DB_COLLECTION_NAME).insert(dbGroup);
+      groups[i].setId(dbGroup.getObjectId(Group.DB_ID).toString());
+    }
+
+    // The first page is full, so it says where the next page starts.
+    JsonObject response = makeConnection("GET", groupServiceURL + "?limit=2", null, 200);
+    JsonArray groupsInResponse = response.getJsonArray(Group.JSON_KEY_GROUPS_FOR_USER_LIST);
+    assertTrue("Expected 2 groups in the first page.", groupsInResponse.size() == 2);
+    assertTrue("Wrong first group.", groups[0].isEqual(new Group(groupsInResponse.getString(0))));
+    assertTrue("Wrong second group.", groups[1].isEqual(new Group(groupsInResponse.getString(1))));
+    assertNotNull("Expected a next page.", response.get("next"));
+
+    // The second page has the last group, and no next page.
+    String url = groupServiceURL + "?limit=2&after=" + response.getString("next");
+    response = makeConnection("GET", url, null, 200);
+    groupsInResponse = response.getJsonArray(Group.JSON_KEY_GROUPS_FOR_USER_LIST);
+    assertTrue("Expected 1 group in the second page.", groupsInResponse.size() == 1);
+    assertTrue("Wrong third group.", groups[2].isEqual(new Group(groupsInResponse.getString(0))));
+    assertNull("Expected no next page.", response.get("next"));
+
+    // An invalid starting point is rejected.
+    makeConnection("GET", groupServiceURL + "?after=123", null, 400);
+  }
+
+  /**
+   * Add some groups to the database. Call POST /lookup with the IDs of two of them, and an ID that
+   * does not exist. Verify that just the two groups are returned.
+   */
+  @Test
+  public void testLookupGroups() throws Exception {
+    System.out.println("\nStarting testLookupGroups");
+
+    // Create groups in database
+    Group[] groups = new Group[3];
+    String[] groupIds = new String[groups.length];
+    for (int i = 0; i < groups.length; i++) {
+      groups[i] = new Group(null, "lookupGroup" + i, new String[] {"12345", "6789" + i});
+      BasicDBObject dbGroup = groups[i].getDBObject(false);
+      db.getCollection(Group.DB_COLLECTION_NAME).insert(dbGroup);
+      groupIds[i] = dbGroup.getObjectId(Group.DB_ID).toString();
+      groups[i].setId(groupIds[i]);
+    }
+
+    String payload =
+        Json.createObjectBuilder()
+            .add(
+                "ids",
+                Json.createArrayBuilder()
+                    .add(groupIds[0])
+                    .add(groupIds[2])
+                    .add(new ObjectId().toString()))
+            .build()
+            .toString();
+    JsonObject response = makeConnection("POST", groupServiceURL + "/lookup", payload, 200);
+
+    // Verify the returned groups are correct
+    JsonArray groupsInResponse = response.getJsonArray(Group.JSON_KEY_GROUPS_FOR_USER_LIST);
+    assertTrue("Expected 2 groups in response.", groupsInResponse.size() == 2);
+    boolean group0Found = false;
+    boolean group2Found = false;
+    for (int i = 0; i < groupsInResponse.size(); i++) {
+      Group returnedGroup = new Group(groupsInResponse.getJsonObject(i).toString());
+      group0Found |= groups[0].isEqual(returnedGroup);
+      group2Found |= groups[2].isEqual(returnedGroup);
+    }
+    assertTrue("The looked up groups were not returned.", group0Found && group2Found);
+
+    // An invalid ID is rejected
+    payload =
+        Json.createObjectBuilder()
+            .add("ids", Json.createArrayBuilder().add("123"))
+            .build()
+            .toString();
+    makeConnection("POST", groupServiceURL + "/lookup", payload, 400);
+
+    // So are an ID that is not a string, and a payload without an array of IDs
+    payload =
+        Json.createObjectBuilder().add("ids", Json.createArrayBuilder().add(42)).build().toString();
+    makeConnection("POST", groupServiceURL + "/lookup", payload, 400);
+    payload = Json.createObjectBuilder().add("ids", "notAnArray").build().toString();
+    makeConnection("POST", groupServiceURL + "/lookup", payload, 400);
+  }
+
+  /**
+   * Add a group to the database. Call GET and POST /lookup with expand=members. Verify that the
+   * group is returned either with the profiles of its members, or, if the user service cannot be
+   * reached, with just their IDs.
+   */
+  @Test
+  public void testExpandMembers() throws Exception {
+    System.out.println("\nStarting testExpandMembers");
+
+    // Create group in database
+    String[] members = new String[] {"12345", "23456"};
+    Group group = new Group(null, "expandGroup", members);
+    BasicDBObject dbGroup = group.getDBObject(false);
+    db.getCollection(Group.DB_COLLECTION_NAME).insert(dbGroup);
+    String groupId = dbGroup.getObjectId(Group.DB_ID).toString();
+    group.setId(groupId);
+
+    JsonObject response =
+        makeConnection("GET", groupServiceURL + "/" + groupId + "?expand=members", null, 200);
+    verifyExpandedGroup(group, members, response);
+
+    String payload =
+        Json.createObjectBuilder()
+            .add("ids", Json.createArrayBuilder().add(groupId))
+            .build()
+            .toString();
+    response = makeConnection("POST", groupServiceURL + "/lookup?expand=members", payload, 200);
+    JsonArray groupsInResponse = response.getJsonArray(Group.JSON_KEY_GROUPS_FOR_USER_LIST);
+    assertTrue("Expected 1 group in response.", groupsInResponse.size() == 1);
+    verifyExpandedGroup(group, members, groupsInResponse.getJsonObject(0));
+  }
+
+  /**
+   * Verify that an expanded group has the expected members, and that any member profiles are for
+   * those members.
+   */
+  private void verifyExpandedGroup(Group expected, String[] members, JsonObject expandedGroup)
+      throws Exception {
+    assertTrue(
+        "Group info returned does not match the group info in the database ",
+        expected.isEqual(new Group(expandedGroup.toString())));
+
+    JsonArray memberProfiles = expandedGroup.getJsonArray(Group.JSON_KEY_MEMBER_PROFILES);
+    if (memberProfiles == null) {
+      System.out.println(
+          "The member profiles were not returned, the user service is not reachable");
+      return;
+    }
+    List<String> memberIds = Arrays.asList(members);
+    for (JsonObject profile : memberProfiles.getValuesAs(JsonObject.class)) {
+      assertTrue(
+          "A profile was returned for a user who is not a member: " + profile,
+          memberIds.contains(profile.getString("id")));
+    }
+  }
+
   /**
    * Add a new group object to the database. Call PUT using the id of the new mongo object to update
    * the group information (name, members list, occasions list). Verify that the group information
@@ -0,0 +1,147 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.ws.rs.ProcessingException;
+import net.wasdev.samples.microprofile.group.UserLookup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserLookupTest {
+
+  private HttpServer userService;
+  private UserLookup lookup;
+
+  /** The number of calls the user service has had. */
+  private final AtomicInteger calls = new AtomicInteger();
+
+  /** Released at the end of each test, so that a slow user service stops waiting. */
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  /** When true, the user service never answers. */
+  private volatile boolean hang = false;
+
+  @Before
+  public void setUp() throws IOException {
+    userService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    userService.createContext("/users/lookup", exchange -> lookupUsers(exchange));
+    userService.start();
+
+    lookup = new UserLookup();
+    lookup.setUserServiceUrl("http://localhost:" + userService.getAddress().getPort() + "/users");
+  }
+
+  @After
+  public void tearDown() {
+    done.countDown();
+    lookup.shutdown();
+    userService.stop(0);
+  }
+
+  /** The profiles should be returned keyed by user ID, and each ID should be looked up once. */
+  @Test
+  public void testLookupUsers() {
+    Map<String, JsonObject> profiles =
+        lookup.lookupUsers(Arrays.asList("user1", "user2", "user1"), "Bearer token");
+
+    assertEquals(2, profiles.size());
+    assertEquals("First user1", profiles.get("user1").getString("firstName"));
+    assertEquals("First user2", profiles.get("user2").getString("firstName"));
+    assertEquals(1, calls.get());
+  }
+
+  /** Many members should be looked up a chunk at a time. */
+  @Test
+  public void testLookupUsersInChunks() {
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < 501; i++) {
+      ids.add("user" + i);
+    }
+
+    assertEquals(501, lookup.lookupUsers(ids, "Bearer token").size());
+    assertEquals(2, calls.get());
+  }
+
+  /** A user service that does not answer should fail the lookup once the read timeout is up. */
+  @Test
+  public void testReadTimeout() {
+    hang = true;
+    lookup.setReadTimeoutMillis(500);
+
+    long start = System.nanoTime();
+    try {
+      lookup.lookupUsers(Arrays.asList("user1"), "Bearer token");
+      fail("The lookup should have timed out");
+    } catch (ProcessingException pe) {
+      // Expected.
+    }
+    assertTrue(
+        "The lookup took too long to time out",
+        System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+  }
+
+  /** Answer a bulk lookup with a profile for each ID. */
+  private void lookupUsers(HttpExchange exchange) throws IOException {
+    calls.incrementAndGet();
+    if (hang) {
+      try {
+        done.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+      return;
+    }
+
+    JsonObject request = Json.createReader(exchange.getRequestBody()).readObject();
+    JsonArrayBuilder users = Json.createArrayBuilder();
+    for (JsonString id : request.getJsonArray("ids").getValuesAs(JsonString.class)) {
+      users.add(
+          Json.createObjectBuilder()
+              .add("id", id.getString())
+              .add("firstName", "First " + id.getString()));
+    }
+    byte[] response =
+        Json.createObjectBuilder()
+            .add("users", users)
+            .build()
+            .toString()
+            .getBytes(StandardCharsets.UTF_8);
+
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, response.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(response);
+    }
+  }
+}
@@ -18,10 +18,18 @@ import java.util.logging.SimpleFormatter;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -35,6 +43,10 @@ import org.eclipse.microprofile.jwt.JsonWebToken;
 public class NotificationResource {
 
   private static final String JSON_KEY_NOTIFICATION = "notification";
+  private static final String JSON_KEY_NOTIFICATIONS = "notifications";
+  private static final String JSON_KEY_RESULTS = "results";
+  private static final String JSON_KEY_STATUS = "status";
+  private static final String JSON_KEY_ERROR = "error";
 
   Logger logger =
       Logger.getLogger("net.wasdev.sample.microprofile.notification.NotificationResource");
@@ -86,6 +98,70 @@ public class NotificationResource {
     return Response.ok().build();
   }
 
+  /**
+   * Log a batch of notifications. Each notification in the array has the same form as the payload
+   * of a single notification. The response has one result for each notification, in the same order,
+   * with the status that a single request for it would have returned.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes("application/json")
+  @Produces("application/json")
+  public Response notifyBatch(JsonObject payload) {
+
+    // Validate the JWT.  At this point, anyone can submit a notification if they
+    // have a valid JWT.
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    if (payload == null || !(payload.get(JSON_KEY_NOTIFICATIONS) instanceof JsonArray)) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("Payload must contain an array of " + JSON_KEY_NOTIFICATIONS)
+          .build();
+    }
+    JsonArray notifications = payload.getJsonArray(JSON_KEY_NOTIFICATIONS);
+
+    JsonArrayBuilder results = Json.createArrayBuilder();
+    for (JsonValue value : notifications) {
+      JsonObjectBuilder result = Json.createObjectBuilder();
+      JsonValue notification = getField(value, JSON_KEY_NOTIFICATION, ValueType.STRING);
+      if (notification != null) {
+        logger.info(((JsonString) notification).getString());
+        result.add(JSON_KEY_STATUS, Status.OK.getStatusCode());
+      } else {
+        result.add(JSON_KEY_STATUS, Status.BAD_REQUEST.getStatusCode());
+        result.add(JSON_KEY_ERROR, "Notification must contain a " + JSON_KEY_NOTIFICATION);
+      }
+      results.add(result);
+    }
+
+    return Response.ok(Json.createObjectBuilder().add(JSON_KEY_RESULTS, results).build()).build();
+  }
+
+  /**
+   * Get a field of a JSON object, if it has the expected type.
+   *
+   * @param value The object, may be null or not an object.
+   * @param key The name of the field.
+   * @param type The expected type of the field.
+   * @return The field, or null if the value is not an object or the field is missing or has another
+   *     type.
+   */
+  private static JsonValue getField(JsonValue value, String key, ValueType type) {
+    if (value == null || value.getValueType() != ValueType.OBJECT) {
+      return null;
+    }
+    JsonValue field = ((JsonObject) value).get(key);
+    return field != null && field.getValueType() == type ? field : null;
+  }
+
   /** Do some basic checks on the JWT, until the MP-JWT annotations are ready. */
   private void validateJWT() throws JWTException {
     // Make sure the authorization header was present.  This check is somewhat
@@ -16,10 +16,13 @@ import static org.junit.Assert.assertTrue;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.HashSet;
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObjectBuilder;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -93,6 +96,84 @@ public class NotificationTest {
     }
   }
 
+  /** Tests sending a batch of notifications, one of which is malformed. */
+  @Test
+  public void testBatchNotification() throws Exception {
+    JsonArrayBuilder notifications = Json.createArrayBuilder();
+    notifications.add(
+        Json.createObjectBuilder()
+            .add(
+                JSON_KEY_NOTIFICATION,
+                "Happy anniversary Ann B.\nBob B. and Bill B. have contributed a total of $500 for your gift."));
+    notifications.add(Json.createObjectBuilder().add("unexpected", "value"));
+    notifications.add(
+        Json.createObjectBuilder()
+            .add(
+                JSON_KEY_NOTIFICATION,
+                "Happy retirement Carl C.\nCathy C. has contributed a total of $200 for your gift."));
+    JsonObjectBuilder payload = Json.createObjectBuilder();
+    payload.add("notifications", notifications);
+
+    Response response =
+        processRequest(notificationServiceURL + "/batch", "POST", payload.build().toString());
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+
+    // There is one result for each notification, in the order they were sent.
+    JsonArray results =
+        Json.createReader(new StringReader(response.readEntity(String.class)))
+            .readObject()
+            .getJsonArray("results");
+    assertEquals(3, results.size());
+    assertEquals(Status.OK.getStatusCode(), results.getJsonObject(0).getInt("status"));
+    assertEquals(Status.BAD_REQUEST.getStatusCode(), results.getJsonObject(1).getInt("status"));
+    assertEquals(Status.OK.getStatusCode(), results.getJsonObject(2).getInt("status"));
+
+    // Verify that the two good notifications were logged.
+    BufferedReader br = new BufferedReader(new FileReader(logFile));
+    try {
+      String line = null;
+      boolean notification1Found = false;
+      boolean notification2Found = false;
+      while ((line = br.readLine()) != null) {
+        if (line.contains("Happy anniversary Ann B.")) {
+          notification1Found = true;
+        }
+        if (line.contains("Happy retirement Carl C.")) {
+          notification2Found = true;
+        }
+      }
+
+      assertTrue(
+          "Not all notifications were found. Found: notification1: "
+              + notification1Found
+              + "notification2: "
+              + notification2Found,
+          (notification1Found && notification2Found));
+    } finally {
+      br.close();
+    }
+  }
+
+  /** Tests that a batch without an array of notifications is rejected. */
+  @Test
+  public void testBatchNotificationBadPayload() throws Exception {
+    String[] payloads = {
+      null,
+      Json.createObjectBuilder().build().toString(),
+      Json.createObjectBuilder().add("notifications", "notAnArray").build().toString()
+    };
+    for (String payload : payloads) {
+      Response response = processRequest(notificationServiceURL + "/batch", "POST", payload);
+      assertEquals(
+          "HTTP response code should have been " + Status.BAD_REQUEST.getStatusCode() + ".",
+          Status.BAD_REQUEST.getStatusCode(),
+          response.getStatus());
+    }
+  }
+
   public Response processRequest(String url, String method, String payload)
       throws GeneralSecurityException, IOException {
     Client client = ClientBuilder.newClient();
@@ -13,15 +13,24 @@ package net.wasdev.sample.microprofile.notification.extended;
 import java.io.File;
 import java.util.Set;
 import java.util.logging.FileHandler;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -43,6 +52,10 @@ public class NotificationResource {
   public static final String JSON_KEY_TWITTER_NOTIF_MODE = "notificationMode";
   public static final String JSON_KEY_TWITTER_NOTIF_MODE_DM = "directMessage";
   public static final String JSON_KEY_TWITTER_NOTIF_MODE_POST_MENTION = "mention";
+  public static final String JSON_KEY_NOTIFICATIONS = "notifications";
+  public static final String JSON_KEY_RESULTS = "results";
+  public static final String JSON_KEY_STATUS = "status";
+  public static final String JSON_KEY_ERROR = "error";
 
   private Twitter twitter;
 
@@ -148,6 +161,78 @@ public class NotificationResource {
     return Response.ok().build();
   }
 
+  /**
+   * Log and tweet a batch of notifications. Each notification in the array has the same form as the
+   * payload of a single notification. The response has one result for each notification, in the
+   * same order, with the status that a single request for it would have returned.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes("application/json")
+  @Produces("application/json")
+  public Response notifyBatch(JsonObject payload) {
+    // Validate the JWT. At this point, anyone can submit a notification if they
+    // have a valid JWT.
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    if (payload == null || !(payload.get(JSON_KEY_NOTIFICATIONS) instanceof JsonArray)) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("Payload must contain an array of " + JSON_KEY_NOTIFICATIONS)
+          .build();
+    }
+    JsonArray notifications = payload.getJsonArray(JSON_KEY_NOTIFICATIONS);
+
+    JsonArrayBuilder results = Json.createArrayBuilder();
+    for (JsonValue value : notifications) {
+      JsonObjectBuilder result = Json.createObjectBuilder();
+      JsonValue notification = getField(value, JSON_KEY_NOTIFICATION, ValueType.OBJECT);
+      JsonValue twitterHandle = getField(notification, JSON_KEY_TWITTER_HANDLE, ValueType.STRING);
+      JsonValue message = getField(notification, JSON_KEY_MESSAGE, ValueType.STRING);
+      if (twitterHandle == null || message == null) {
+        result.add(JSON_KEY_STATUS, Status.BAD_REQUEST.getStatusCode());
+        result.add(JSON_KEY_ERROR, "Notification must contain a twitter handle and a message");
+      } else {
+        try {
+          log(((JsonString) message).getString());
+          tweet(((JsonString) twitterHandle).getString(), ((JsonString) message).getString());
+          result.add(JSON_KEY_STATUS, Status.OK.getStatusCode());
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Batch notification error", e);
+          result.add(JSON_KEY_STATUS, Status.INTERNAL_SERVER_ERROR.getStatusCode());
+          result.add(JSON_KEY_ERROR, String.valueOf(e.getMessage()));
+        }
+      }
+      results.add(result);
+    }
+
+    return Response.ok(Json.createObjectBuilder().add(JSON_KEY_RESULTS, results).build()).build();
+  }
+
+  /**
+   * Get a field of a JSON object, if it has the expected type.
+   *
+   * @param value The object, may be null or not an object.
+   * @param key The name of the field.
+   * @param type The expected type of the field.
+   * @return The field, or null if the value is not an object or the field is missing or has another
+   *     type.
+   */
+  private static JsonValue getField(JsonValue value, String key, ValueType type) {
+    if (value == null || value.getValueType() != ValueType.OBJECT) {
+      return null;
+    }
+    JsonValue field = ((JsonObject) value).get(key);
+    return field != null && field.getValueType() == type ? field : null;
+  }
+
   private void log(String message) {
     logger.info(message);
   }
@@ -16,10 +16,13 @@ import static org.junit.Assert.fail;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.HashSet;
 import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObjectBuilder;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -157,6 +160,97 @@ public class NotificationTest {
     }
   }
 
+  /**
+   * Tests sending a batch of notifications, some of which are malformed. The malformed ones are
+   * rejected on their own, and the good one is still logged.
+   */
+  @Test
+  public void testBatchNotification() throws Exception {
+    JsonArrayBuilder notifications = Json.createArrayBuilder();
+    notifications.add(
+        Json.createObjectBuilder()
+            .add(
+                JSON_KEY_NOTIFICATION,
+                Json.createObjectBuilder()
+                    .add(JSON_KEY_TWITTER_HANDLE, "BAD_RECEPIENT_HANDLE")
+                    .add(
+                        JSON_KEY_MESSAGE,
+                        "Happy graduation Gina G.\nGary G. has contributed a total of $300 for your gift.")));
+    // Not an object.
+    notifications.add(42);
+    // The notification is a string, as in version 1.
+    notifications.add(Json.createObjectBuilder().add(JSON_KEY_NOTIFICATION, "Happy birthday"));
+    // No message.
+    notifications.add(
+        Json.createObjectBuilder()
+            .add(
+                JSON_KEY_NOTIFICATION,
+                Json.createObjectBuilder().add(JSON_KEY_TWITTER_HANDLE, "BAD_RECEPIENT_HANDLE")));
+    // A handle that is not a string.
+    notifications.add(
+        Json.createObjectBuilder()
+            .add(
+                JSON_KEY_NOTIFICATION,
+                Json.createObjectBuilder()
+                    .add(JSON_KEY_TWITTER_HANDLE, 42)
+                    .add(JSON_KEY_MESSAGE, "Happy birthday")));
+    JsonObjectBuilder payload = Json.createObjectBuilder();
+    payload.add("notifications", notifications);
+
+    Response response =
+        processRequest(notificationServiceURL + "/batch", "POST", payload.build().toString());
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+
+    // There is one result for each notification, in the order they were sent.
+    JsonArray results =
+        Json.createReader(new StringReader(response.readEntity(String.class)))
+            .readObject()
+            .getJsonArray("results");
+    assertEquals(5, results.size());
+    assertEquals(Status.OK.getStatusCode(), results.getJsonObject(0).getInt("status"));
+    for (int i = 1; i < results.size(); i++) {
+      assertEquals(
+          "Notification " + i + " should have been rejected.",
+          Status.BAD_REQUEST.getStatusCode(),
+          results.getJsonObject(i).getInt("status"));
+    }
+
+    // Verify that the good notification was logged.
+    BufferedReader br = new BufferedReader(new FileReader(logFile));
+    try {
+      String line = null;
+      while ((line = br.readLine()) != null) {
+        if (line.contains("Happy graduation Gina G.")) {
+          return;
+        }
+      }
+
+      fail("Not all notifications were found.");
+    } finally {
+      br.close();
+    }
+  }
+
+  /** Tests that a batch without an array of notifications is rejected. */
+  @Test
+  public void testBatchNotificationBadPayload() throws Exception {
+    String[] payloads = {
+      null,
+      Json.createObjectBuilder().build().toString(),
+      Json.createObjectBuilder().add("notifications", "notAnArray").build().toString()
+    };
+    for (String payload : payloads) {
+      Response response = processRequest(notificationServiceURL + "/batch", "POST", payload);
+      assertEquals(
+          "HTTP response code should have been " + Status.BAD_REQUEST.getStatusCode() + ".",
+          Status.BAD_REQUEST.getStatusCode(),
+          response.getStatus());
+    }
+  }
+
   public Response processRequest(String url, String method, String payload)
       throws GeneralSecurityException, IOException {
     Client client = ClientBuilder.newClient();
@@ -0,0 +1,219 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Priority;
+import javax.decorator.Decorator;
+import javax.decorator.Delegate;
+import javax.enterprise.inject.Any;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Caches the JWTs built by the {@link JwtBuilder}.
+ *
+ * <p>The orchestrator asks for the same token, with the same claims, for every occasion it
+ * notifies. Building a token means signing it, so rather than build a new one each time, the token
+ * is reused until it is close to its expiry (the refresh margin). Once a token is inside the
+ * refresh margin it is still handed out, and a new one is built in the background to replace it.
+ * Only a caller that finds no usable token at all waits for a new one to be built, and concurrent
+ * callers in that position wait for the same build.
+ *
+ * <p>The counters and the refresh thread are kept in the {@link JwtCacheState}, which is shared by
+ * every instance of the decorator.
+ */
+@Decorator
+@Priority(Interceptor.Priority.APPLICATION)
+public class CachingJwtBuilder implements JwtBuilder {
+  private static final String clazz = CachingJwtBuilder.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The refresh margin used when none is configured. */
+  private static final long DEFAULT_REFRESH_MARGIN_SECONDS = 300;
+
+  /** A token is not handed out if it would expire before it can reach the other service. */
+  private static final long MINIMUM_VALIDITY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /** The builder that this one caches tokens for. */
+  @Inject @Delegate @Any private JwtBuilder delegate;
+
+  /** How long before a token expires to start building its replacement. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.jwt.refresh.margin.seconds", defaultValue = "300")
+  private long refreshMarginSeconds;
+
+  /** The cache counters and the refresh thread. */
+  @Inject private JwtCacheState state;
+
+  /** The cached tokens, keyed by their claims. */
+  private final ConcurrentMap<String, CachedJwt> tokens =
+      new ConcurrentHashMap<String, CachedJwt>();
+
+  /* following for jmock unit tests */
+  public void setDelegate(JwtBuilder delegate) {
+    this.delegate = delegate;
+  }
+
+  /* following for jmock unit tests */
+  public void setRefreshMarginSeconds(long refreshMarginSeconds) {
+    this.refreshMarginSeconds = refreshMarginSeconds;
+  }
+
+  /* following for jmock unit tests */
+  public void setState(JwtCacheState state) {
+    this.state = state;
+  }
+
+  @Override
+  public String buildCompactJWT(String groupName, String userName) {
+    String key = groupName + "\n" + userName;
+    CachedJwt cached = tokens.computeIfAbsent(key, k -> new CachedJwt(groupName, userName));
+
+    long now = System.currentTimeMillis();
+    String token = cached.getToken(now);
+    if (token != null) {
+      state.recordHit();
+      if (now >= cached.refreshAt()) {
+        cached.refreshInBackground();
+      }
+      return token;
+    }
+
+    state.recordMiss();
+    return cached.build(now);
+  }
+
+  /** The number of tokens handed out from the cache. */
+  public long getHitCount() {
+    return state.getHitCount();
+  }
+
+  /** The number of times a caller had to wait for a token to be built. */
+  public long getMissCount() {
+    return state.getMissCount();
+  }
+
+  private long getRefreshMarginMillis() {
+    long margin = refreshMarginSeconds > 0 ? refreshMarginSeconds : DEFAULT_REFRESH_MARGIN_SECONDS;
+    return TimeUnit.SECONDS.toMillis(margin);
+  }
+
+  /**
+   * Read the expiry (the exp claim) from a compact JWT.
+   *
+   * @return The expiry in milliseconds since the epoch, or zero if the token has no expiry we can
+   *     read, in which case it is not reused.
+   */
+  static long readExpiry(String compactJwt) {
+    try {
+      String[] parts = compactJwt.split("\\.");
+      byte[] claims = Base64.getUrlDecoder().decode(parts[1]);
+      try (JsonReader reader =
+          Json.createReader(new StringReader(new String(claims, StandardCharsets.UTF_8)))) {
+        JsonObject claimsJson = reader.readObject();
+        JsonNumber exp = claimsJson.getJsonNumber("exp");
+        return exp == null ? 0 : TimeUnit.SECONDS.toMillis(exp.longValue());
+      }
+    } catch (RuntimeException re) {
+      logger.log(Level.WARNING, "Could not read the expiry of the orchestrator JWT", re);
+      return 0;
+    }
+  }
+
+  /** The current token for one set of claims. */
+  private class CachedJwt {
+    private final String groupName;
+    private final String userName;
+
+    /** Set while a background refresh is running, so that only one is started. */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private volatile String token = null;
+    private volatile long expiresAt = 0;
+
+    CachedJwt(String groupName, String userName) {
+      this.groupName = groupName;
+      this.userName = userName;
+    }
+
+    /** The token, if it is still good for long enough to be used. */
+    String getToken(long now) {
+      String current = token;
+      return now < expiresAt - MINIMUM_VALIDITY_MILLIS ? current : null;
+    }
+
+    long refreshAt() {
+      return expiresAt - getRefreshMarginMillis();
+    }
+
+    /** Build a new token, unless another caller did so while we waited for the lock. */
+    synchronized String build(long now) {
+      String current = getToken(now);
+      if (current != null) {
+        return current;
+      }
+      return replace();
+    }
+
+    void refreshInBackground() {
+      if (refreshing.compareAndSet(false, true)) {
+        try {
+          state.refresh(
+              () -> {
+                try {
+                  synchronized (this) {
+                    if (System.currentTimeMillis() >= refreshAt()) {
+                      replace();
+                    }
+                  }
+                } catch (Throwable t) {
+                  // The current token is still good, so a later call will try again.
+                  logger.log(Level.WARNING, "Could not refresh the orchestrator JWT", t);
+                } finally {
+                  refreshing.set(false);
+                }
+              });
+        } catch (RejectedExecutionException ree) {
+          // The application is stopping.
+          refreshing.set(false);
+        }
+      }
+    }
+
+    /** Build a token and cache it. Called with the lock held. */
+    private String replace() {
+      String newToken = delegate.buildCompactJWT(groupName, userName);
+      long newExpiresAt = readExpiry(newToken);
+      logger.log(
+          Level.FINE,
+          "Built JWT for {0} that expires at {1}",
+          new Object[] {userName, newExpiresAt});
+      token = newToken;
+      expiresAt = newExpiresAt;
+      return newToken;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+
+/**
+ * The contributions to an occasion, kept in two parallel arrays: the user IDs and the amounts in
+ * cents. Nothing is allocated per contribution, and the user IDs are interned, since the same users
+ * contribute to many occasions.
+ *
+ * <p>The total of the amounts is kept up to date as contributions are added and changed, so it can
+ * be read without adding them up. Amounts are whole cents, so the total is exact.
+ */
+public class ContributionStore {
+  private static final String[] NO_USER_IDS = new String[0];
+  private static final long[] NO_CENTS = new long[0];
+
+  private String[] userIds = NO_USER_IDS;
+  private long[] cents = NO_CENTS;
+  private int size = 0;
+  private long totalCents = 0;
+
+  public ContributionStore() {}
+
+  public ContributionStore(List<Contribution> contributions) {
+    if (null != contributions) {
+      ensureCapacity(contributions.size());
+      for (Contribution contribution : contributions) {
+        add(contribution.getUserId(), contribution.getCents());
+      }
+    }
+  }
+
+  /** Convert an amount in dollars to cents, rounding to the nearest cent. */
+  public static long toCents(double amount) {
+    return Math.round(amount * 100);
+  }
+
+  /** Convert an amount in cents to dollars. */
+  public static double toAmount(long cents) {
+    return cents / 100.0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public String getUserId(int index) {
+    checkIndex(index);
+    return userIds[index];
+  }
+
+  public long getCents(int index) {
+    checkIndex(index);
+    return cents[index];
+  }
+
+  /** The total of all the contributions, in cents. */
+  public long getTotalCents() {
+    return totalCents;
+  }
+
+  /** The index of the first contribution of a user, or -1 if they have not contributed. */
+  public int indexOf(String userId) {
+    for (int i = 0; i < size; i++) {
+      if (userIds[i] == null ? userId == null : userIds[i].equals(userId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Add a contribution to the end, even if the user has contributed already. */
+  public void add(String userId, long amountCents) {
+    ensureCapacity(size + 1);
+    userIds[size] = (null == userId) ? null : userId.intern();
+    cents[size] = amountCents;
+    size++;
+    totalCents += amountCents;
+  }
+
+  /**
+   * Set the amount a user contributes, adding the user if they have not contributed yet.
+   *
+   * @return How much the total changed by, in cents.
+   */
+  public long put(String userId, long amountCents) {
+    int index = indexOf(userId);
+    if (index < 0) {
+      add(userId, amountCents);
+      return amountCents;
+    }
+    long change = amountCents - cents[index];
+    cents[index] = amountCents;
+    totalCents += change;
+    return change;
+  }
+
+  /** The contributions as a list, which reads through to the store and can't be changed. */
+  public List<Contribution> asList() {
+    return new AbstractList<Contribution>() {
+      @Override
+      public Contribution get(int index) {
+        return Contribution.ofCents(getUserId(index), getCents(index));
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > userIds.length) {
+      int newCapacity = Math.max(capacity, Math.max(4, userIds.length * 2));
+      userIds = Arrays.copyOf(userIds, newCapacity);
+      cents = Arrays.copyOf(cents, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * What the {@link CachingJwtBuilder} decorators share: the cache counters, and the thread that
+ * builds replacement tokens in the background.
+ *
+ * <p>A decorator is created with each instance of the bean it decorates, so this is kept apart from
+ * it. There is one per application, so the counters are published once, by the {@link
+ * Orchestrator}, and refreshes run one at a time on a single thread however many tokens are cached.
+ */
+@ApplicationScoped
+public class JwtCacheState {
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /** Builds replacement tokens in the background. Created on first use. */
+  private ExecutorService refreshExecutor = null;
+
+  /** Count a token handed out from the cache. */
+  public void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  /** Count a caller that had to wait for a token to be built. */
+  public void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  /** The number of tokens handed out from the cache. */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** The number of times a caller had to wait for a token to be built. */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Build a replacement token in the background.
+   *
+   * @param refresh Builds the token.
+   * @throws java.util.concurrent.RejectedExecutionException If the application is stopping.
+   */
+  public void refresh(Runnable refresh) {
+    getRefreshExecutor().execute(refresh);
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (refreshExecutor != null) {
+      refreshExecutor.shutdownNow();
+    }
+  }
+
+  private synchronized ExecutorService getRefreshExecutor() {
+    if (refreshExecutor == null) {
+      refreshExecutor =
+          Executors.newSingleThreadExecutor(
+              new OccasionScheduler.NamedThreadFactory("jwt-refresh"));
+    }
+    return refreshExecutor;
+  }
+}
@@ -0,0 +1,171 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.JsonObject;
+
+/**
+ * Caches the groups or users that the orchestrator looks up in the other services.
+ *
+ * <p>Entries expire a fixed time after they were looked up, and once the cache is full the least
+ * recently used entry is evicted. An entry holds the lookup itself rather than its result, so
+ * callers that miss on the same key while it is being looked up wait for the same lookup rather
+ * than each starting their own. A lookup that fails is not cached.
+ */
+public class LookupCache {
+  private static final String clazz = LookupCache.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  private final String name;
+  private final int maxSize;
+  private final long ttlMillis;
+
+  /** The entries, least recently used first. Guarded by this. */
+  private final LinkedHashMap<String, CachedLookup> entries;
+
+  // Counters, guarded by this.
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param name The name of the cache, for logging.
+   * @param maxSize The most entries to keep.
+   * @param ttlMillis How long an entry is good for after it is looked up.
+   */
+  public LookupCache(String name, int maxSize, long ttlMillis) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("The cache size must be at least one: " + maxSize);
+    }
+    this.name = name;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.entries =
+        new LinkedHashMap<String, CachedLookup>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedLookup> eldest) {
+            if (size() > LookupCache.this.maxSize) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Get the cached value for a key, or look it up if it is not cached.
+   *
+   * @param key The group or user ID.
+   * @param loader Starts the lookup, if one is needed.
+   * @return The cached or new lookup.
+   */
+  public CompletableFuture<JsonObject> get(
+      String key, Supplier<CompletableFuture<JsonObject>> loader) {
+    final CachedLookup entry;
+    synchronized (this) {
+      CachedLookup cached = entries.get(key);
+      long now = System.currentTimeMillis();
+      if (cached != null) {
+        if (now < cached.expiresAt) {
+          hits++;
+          return cached.value;
+        }
+        entries.remove(key);
+        evictions++;
+      }
+
+      misses++;
+      entry = new CachedLookup(now + ttlMillis);
+      entries.put(key, entry);
+    }
+
+    logger.log(Level.FINE, "Looking up {0} {1}", new Object[] {name, key});
+    try {
+      loader
+          .get()
+          .whenComplete(
+              (value, t) -> {
+                if (t != null) {
+                  remove(key, entry);
+                  entry.value.completeExceptionally(t);
+                } else {
+                  entry.value.complete(value);
+                }
+              });
+    } catch (RuntimeException re) {
+      remove(key, entry);
+      entry.value.completeExceptionally(re);
+    }
+    return entry.value;
+  }
+
+  /** Drop the cached value for a key, so that the next get looks it up again. */
+  public synchronized void invalidate(String key) {
+    entries.remove(key);
+  }
+
+  /** Drop every cached value. */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /** The fraction of gets that were answered from the cache. */
+  public synchronized double getHitRatio() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** The number of entries dropped because the cache was full, or because they expired. */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /** Remove an entry, unless it has been replaced in the meantime. */
+  private synchronized void remove(String key, CachedLookup entry) {
+    if (entries.get(key) == entry) {
+      entries.remove(key);
+    }
+  }
+
+  private static class CachedLookup {
+    private final CompletableFuture<JsonObject> value = new CompletableFuture<JsonObject>();
+    private final long expiresAt;
+
+    CachedLookup(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -10,40 +10,41 @@
 // ******************************************************************************
 package net.wasdev.samples.microProfile.occasions;
 
-import com.mongodb.DB;
-import com.mongodb.MongoClient;
-import java.net.UnknownHostException;
+import com.mongodb.BasicDBObject;
 import javax.enterprise.context.ApplicationScoped;
-import javax.inject.Inject;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
+import net.wasdev.samples.microprofile.mongo.AbstractMongoAccess;
+import net.wasdev.samples.microprofile.mongo.IndexReconciler;
 
 /** Holds the MongoDB instance that the JAX-RS resources will use. */
 @ApplicationScoped
-public class MongoAccess {
-  /** The mongoDB hostname */
-  @Inject
-  @ConfigProperty(name = "mongo.hostname")
-  private String mongoHostname;
+public class MongoAccess extends AbstractMongoAccess {
 
-  /** The mongoDB port */
-  @Inject
-  @ConfigProperty(name = "mongo.port")
-  private int mongoPort;
-
-  /** Cached DB reference used by all threads. */
-  private DB database = null;
-
-  /** Get a connection to Mongo */
-  public synchronized DB getMongoDB() {
-    if (database == null) {
-      try {
-        MongoClient client = new MongoClient(mongoHostname, mongoPort);
-        database = client.getDB("gifts-occasion");
-      } catch (UnknownHostException uhe) {
-        throw new RuntimeException(uhe);
-      }
-    }
+  public MongoAccess() {
+    super("gifts-occasion");
+  }
 
-    return database;
+  /**
+   * The occasions are listed by group in order of ID, loaded into the schedule by the time they are
+   * notified (or by date, for occasions stored before that time was), and reloaded when their claim
+   * runs out.
+   */
+  @Override
+  protected void declareIndexes(IndexReconciler reconciler) {
+    // The list of a group's occasions, a page at a time in order of ID. A date range is
+    // filtered as the index is read.
+    reconciler.declare(
+        "occasions",
+        new BasicDBObject(Occasion.OCCASION_GROUP_ID_KEY, 1).append(Occasion.OCCASION_ID_KEY, 1),
+        null);
+    // The schedule loader: a range of notifyAt, or notifyAt null and a range of dates.
+    reconciler.declare(
+        "occasions",
+        new BasicDBObject(Occasion.OCCASION_NOTIFY_AT_KEY, 1).append(Occasion.OCCASION_DATE_KEY, 1),
+        null);
+    // Claims that ran out.
+    reconciler.declare(
+        "occasions",
+        new BasicDBObject(OccasionClaims.OCCASION_LEASE_UNTIL_KEY, 1),
+        new BasicDBObject("sparse", true));
   }
 }
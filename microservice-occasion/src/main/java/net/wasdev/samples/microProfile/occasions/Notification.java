@@ -0,0 +1,36 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+/** A notification for an occasion that is ready to send to the notification service. */
+public class Notification {
+  private final String occasionId;
+  private final String message;
+  private final String twitterHandle;
+
+  public Notification(String occasionId, String message, String twitterHandle) {
+    this.occasionId = occasionId;
+    this.message = message;
+    this.twitterHandle = twitterHandle;
+  }
+
+  public String getOccasionId() {
+    return occasionId;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public String getTwitterHandle() {
+    return twitterHandle;
+  }
+}
@@ -0,0 +1,65 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.ws.rs.core.Response;
+
+/**
+ * Sends a batch of notifications to microservice-notification_v1_1, to be tweeted. Used by {@link
+ * NotificationRetryBean} for the notifications in a batch that could not be logged.
+ */
+public class NotificationBatchFallbackHandler {
+
+  private static final String JSON_KEY_NOTIFICATION = "notification";
+  private static final String JSON_KEY_NOTIFICATIONS = "notifications";
+  private static final String JSON_KEY_TWITTER_HANDLE = "twiterHandle";
+  private static final String JSON_KEY_MESSAGE = "message";
+  private static final String JSON_KEY_TWITTER_NOTIF_MODE = "notificationMode";
+
+  private static final String JSON_KEY_TWITTER_NOTIF_MODE_POST_MENTION = "mention";
+
+  public List<OccasionResponse> handle(
+      List<Notification> notifications,
+      Orchestrator orchestrator,
+      String jwtTokenString,
+      String notification11BatchUrl) {
+
+    JsonArrayBuilder batch = Json.createArrayBuilder();
+    for (Notification notification : notifications) {
+      JsonObjectBuilder content = Json.createObjectBuilder();
+      content.add(JSON_KEY_TWITTER_HANDLE, notification.getTwitterHandle());
+      content.add(JSON_KEY_TWITTER_NOTIF_MODE, JSON_KEY_TWITTER_NOTIF_MODE_POST_MENTION);
+      content.add(JSON_KEY_MESSAGE, notification.getMessage());
+      batch.add(Json.createObjectBuilder().add(JSON_KEY_NOTIFICATION, content.build()));
+    }
+    String payload =
+        Json.createObjectBuilder().add(JSON_KEY_NOTIFICATIONS, batch).build().toString();
+
+    try {
+      Response notificationResponse =
+          orchestrator.makeConnection("POST", notification11BatchUrl, payload, jwtTokenString);
+      return OccasionResponse.fromBatchResponse(
+          notificationResponse, notifications.size(), OccasionResponse.NOTIFICATION_TYPE_TWEET);
+    } catch (Throwable t) {
+      t.printStackTrace();
+      List<OccasionResponse> errors = new ArrayList<OccasionResponse>(notifications.size());
+      for (int i = 0; i < notifications.size(); i++) {
+        errors.add(new OccasionResponse(null, OccasionResponse.NOTIFICATION_TYPE_ERROR, t));
+      }
+      return errors;
+    }
+  }
+}
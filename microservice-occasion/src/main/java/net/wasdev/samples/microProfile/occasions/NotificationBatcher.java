@@ -0,0 +1,167 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects notifications into batches, so that occasions that are due at the same time are sent to
+ * the notification service in a few requests rather than one request each.
+ *
+ * <p>A batch is sent once it is full, or once the first notification in it has waited for the
+ * linger time, whichever comes first. Batches are sent one at a time. Notifications that are
+ * submitted while a batch is being sent wait for the next batch, so the busier the notification
+ * service is, the fuller the batches get.
+ */
+public class NotificationBatcher {
+  private static final String clazz = NotificationBatcher.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  private final int batchSize;
+  private final long lingerNanos;
+
+  /** Sends a batch and returns one response for each notification, in the same order. */
+  private final Function<List<Notification>, List<OccasionResponse>> sender;
+
+  /** The notifications waiting to be put in a batch. */
+  private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+
+  /** Builds and sends the batches. */
+  private final ExecutorService dispatcher =
+      Executors.newSingleThreadExecutor(
+          new OccasionScheduler.NamedThreadFactory("occasion-notification-batcher"));
+
+  private final AtomicLong batchesSent = new AtomicLong();
+
+  /**
+   * @param batchSize The most notifications to send in one batch.
+   * @param lingerMillis How long to wait for a batch to fill up before sending it anyway.
+   * @param sender Sends a batch and returns one response for each notification, in the same order.
+   */
+  public NotificationBatcher(
+      int batchSize,
+      long lingerMillis,
+      Function<List<Notification>, List<OccasionResponse>> sender) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be at least one: " + batchSize);
+    }
+    this.batchSize = batchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(lingerMillis, 0));
+    this.sender = sender;
+    dispatcher.execute(() -> dispatch());
+  }
+
+  /**
+   * Add a notification to the next batch.
+   *
+   * @param notification The notification to send.
+   * @return The response for the notification, once its batch has been sent.
+   */
+  public CompletableFuture<OccasionResponse> submit(Notification notification) {
+    Pending pending = new Pending(notification);
+    queue.add(pending);
+    return pending.response;
+  }
+
+  /** The number of notifications waiting to be put in a batch. */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** The number of batches that have been sent. */
+  public long getBatchCount() {
+    return batchesSent.get();
+  }
+
+  /** Stop sending batches. Notifications that have not been sent yet are cancelled. */
+  public void shutdown() {
+    dispatcher.shutdownNow();
+  }
+
+  private void dispatch() {
+    try {
+      while (true) {
+        List<Pending> batch = new ArrayList<Pending>(batchSize);
+        batch.add(queue.take());
+
+        // Give the batch until the linger time is up to fill, but take anything that is already
+        // waiting even once it is.
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+
+        send(batch);
+      }
+    } catch (InterruptedException ie) {
+      // Shutting down.
+    }
+
+    List<Pending> unsent = new ArrayList<Pending>();
+    queue.drainTo(unsent);
+    for (Pending pending : unsent) {
+      pending.response.completeExceptionally(
+          new CancellationException("The notification batcher was shut down"));
+    }
+  }
+
+  private void send(List<Pending> batch) {
+    List<Notification> notifications = new ArrayList<Notification>(batch.size());
+    for (Pending pending : batch) {
+      notifications.add(pending.notification);
+    }
+    logger.log(Level.FINE, "Sending a batch of {0} notifications", batch.size());
+    batchesSent.incrementAndGet();
+
+    try {
+      List<OccasionResponse> responses = sender.apply(notifications);
+      if (responses.size() != batch.size()) {
+        throw new IllegalStateException(
+            "Got " + responses.size() + " responses for a batch of " + batch.size());
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).response.complete(responses.get(i));
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Could not send a batch of notifications", t);
+      for (Pending pending : batch) {
+        pending.response.completeExceptionally(t);
+      }
+    }
+  }
+
+  /** A notification waiting for its batch to be sent. */
+  private static class Pending {
+    private final Notification notification;
+    private final CompletableFuture<OccasionResponse> response =
+        new CompletableFuture<OccasionResponse>();
+
+    Pending(Notification notification) {
+      this.notification = notification;
+    }
+  }
+}
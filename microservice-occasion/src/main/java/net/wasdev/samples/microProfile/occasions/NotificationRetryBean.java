@@ -11,20 +11,32 @@
 package net.wasdev.samples.microProfile.occasions;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.Retry;
 
 @ApplicationScoped
 public class NotificationRetryBean {
+  private static final String clazz = NotificationRetryBean.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
 
   // Notification keys
   public static final String JSON_KEY_NOTIFICATION = "notification";
+  public static final String JSON_KEY_NOTIFICATIONS = "notifications";
 
   /*
    * Retried twice in the event of failure, after which the fallback handler
@@ -52,4 +64,108 @@ public class NotificationRetryBean {
 
     return occasionResponse;
   }
+
+  /** How many times a notification in a batch is sent again after it fails. */
+  static final int BATCH_MAX_RETRIES = 2;
+
+  /*
+   * Send a batch of notifications. Each attempt only sends the notifications
+   * that have not been sent yet, so that the ones the notification service
+   * accepted are not logged twice. A notification that is still failing after
+   * two retries is sent to microservice-notification_v1_1, to be tweeted, in
+   * one more batch of the ones that are left. A notification the service
+   * rejected as not valid is not sent again.
+   */
+  public List<OccasionResponse> makeBatchNotificationConnection(
+      List<Notification> notifications,
+      Orchestrator orchestrator,
+      String jwtTokenString,
+      String notification11BatchUrl,
+      String notificationBatchUrl) {
+
+    OccasionResponse[] responses = new OccasionResponse[notifications.size()];
+    List<Integer> unsent = new ArrayList<Integer>(notifications.size());
+    for (int i = 0; i < notifications.size(); i++) {
+      unsent.add(i);
+    }
+
+    for (int attempt = 0; attempt <= BATCH_MAX_RETRIES && !unsent.isEmpty(); attempt++) {
+      List<Notification> batch = select(notifications, unsent);
+      List<OccasionResponse> results;
+      try {
+        results = sendBatch(batch, orchestrator, jwtTokenString, notificationBatchUrl);
+      } catch (IOException | ProcessingException | JsonException e) {
+        // The batch as a whole failed, so none of it is known to have been sent. The client throws
+        // a ProcessingException when the service cannot be reached or does not answer in time, and
+        // the reader a JsonException when the response is not the results.
+        logger.log(Level.FINE, "Batch notification request failed", e);
+        continue;
+      }
+      unsent = record(unsent, results, responses);
+    }
+
+    if (!unsent.isEmpty()) {
+      List<OccasionResponse> results =
+          new NotificationBatchFallbackHandler()
+              .handle(
+                  select(notifications, unsent),
+                  orchestrator,
+                  jwtTokenString,
+                  notification11BatchUrl);
+      for (int i = 0; i < unsent.size(); i++) {
+        responses[unsent.get(i)] = results.get(i);
+      }
+    }
+
+    return Arrays.asList(responses);
+  }
+
+  /** Send one batch of notifications to be logged, and get the result of each one. */
+  private List<OccasionResponse> sendBatch(
+      List<Notification> notifications,
+      Orchestrator orchestrator,
+      String jwtTokenString,
+      String notificationBatchUrl)
+      throws IOException {
+
+    JsonArrayBuilder batch = Json.createArrayBuilder();
+    for (Notification notification : notifications) {
+      batch.add(Json.createObjectBuilder().add(JSON_KEY_NOTIFICATION, notification.getMessage()));
+    }
+    JsonObject notificationRequestPayload =
+        Json.createObjectBuilder().add(JSON_KEY_NOTIFICATIONS, batch).build();
+    Response notificationResponse =
+        orchestrator.makeConnection(
+            "POST", notificationBatchUrl, notificationRequestPayload.toString(), jwtTokenString);
+
+    return OccasionResponse.fromBatchResponse(
+        notificationResponse, notifications.size(), OccasionResponse.NOTIFICATION_TYPE_LOG);
+  }
+
+  /**
+   * Keep the results of an attempt that are final, and return the positions of the notifications
+   * that should be sent again, which are the ones that failed on the server side.
+   */
+  private static List<Integer> record(
+      List<Integer> sent, List<OccasionResponse> results, OccasionResponse[] responses) {
+    List<Integer> retry = new ArrayList<Integer>();
+    for (int i = 0; i < sent.size(); i++) {
+      OccasionResponse result = results.get(i);
+      int status = result.getNotificationResponse().getStatus();
+      if (Status.Family.familyOf(status) == Status.Family.SERVER_ERROR) {
+        retry.add(sent.get(i));
+      } else {
+        responses[sent.get(i)] = result;
+      }
+    }
+    return retry;
+  }
+
+  private static List<Notification> select(List<Notification> notifications, List<Integer> at) {
+    List<Notification> selected = new ArrayList<Notification>(at.size());
+    for (int i : at) {
+      selected.add(notifications.get(i));
+    }
+    return selected;
+  }
 }
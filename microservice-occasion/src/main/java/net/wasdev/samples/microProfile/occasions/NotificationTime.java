@@ -0,0 +1,111 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out when an occasion is notified: at a set time of day on the occasion's date, in a time
+ * zone. Groups can be given their own time zone, for groups whose members are elsewhere.
+ *
+ * <p>This is immutable, and can be shared by any number of threads.
+ */
+public class NotificationTime {
+  /** The format of occasion dates. The formatter is immutable, so one is shared. */
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+  private final LocalTime time;
+  private final ZoneId zone;
+  private final Map<String, ZoneId> groupZones;
+
+  /**
+   * @param time The time of day to notify occasions at.
+   * @param zone The time zone of occasions whose group has no zone of its own.
+   * @param groupZones The time zones of groups, keyed by group ID.
+   */
+  public NotificationTime(LocalTime time, ZoneId zone, Map<String, ZoneId> groupZones) {
+    this.time = time;
+    this.zone = zone;
+    this.groupZones = Collections.unmodifiableMap(new HashMap<String, ZoneId>(groupZones));
+  }
+
+  /**
+   * Read the notification time from configuration values.
+   *
+   * @param time The time of day, for example "08:00". Null or empty for 8AM.
+   * @param zone The time zone ID, for example "America/Chicago". Null or empty for the time zone of
+   *     the server.
+   * @param groupZones The time zones of groups, for example "0001=Europe/Paris,0002=Asia/Tokyo".
+   *     Null or empty if no group has its own time zone.
+   * @throws java.time.DateTimeException If a time or time zone is not valid.
+   * @throws IllegalArgumentException If a group's time zone is not in the form group=zone.
+   */
+  public static NotificationTime parse(String time, String zone, String groupZones) {
+    Map<String, ZoneId> zones = new HashMap<String, ZoneId>();
+    if (null != groupZones && !groupZones.trim().isEmpty()) {
+      for (String groupZone : groupZones.split(",")) {
+        String[] parts = groupZone.split("=");
+        if (parts.length != 2) {
+          throw new IllegalArgumentException("Expected group=zone but found: " + groupZone);
+        }
+        zones.put(parts[0].trim(), ZoneId.of(parts[1].trim()));
+      }
+    }
+
+    return new NotificationTime(
+        (null == time || time.isEmpty()) ? LocalTime.of(8, 0) : LocalTime.parse(time),
+        (null == zone || zone.isEmpty()) ? ZoneId.systemDefault() : ZoneId.of(zone),
+        zones);
+  }
+
+  /**
+   * When to notify an occasion.
+   *
+   * @param date The date of the occasion (yyyy-MM-dd).
+   * @param groupId The group of the occasion, which may have its own time zone.
+   * @return The time to notify the occasion, in milliseconds since the epoch.
+   * @throws java.time.format.DateTimeParseException If the date is not valid.
+   */
+  public long getNotifyAtMillis(String date, String groupId) {
+    return getNotifyAtMillis(LocalDate.parse(date, DATE_FORMAT), groupId);
+  }
+
+  /**
+   * When to notify an occasion.
+   *
+   * @param date The date of the occasion.
+   * @param groupId The group of the occasion, which may have its own time zone.
+   * @return The time to notify the occasion, in milliseconds since the epoch.
+   */
+  public long getNotifyAtMillis(LocalDate date, String groupId) {
+    ZoneId groupZone = groupZones.get(groupId);
+    return date.atTime(time)
+        .atZone((groupZone == null) ? zone : groupZone)
+        .toInstant()
+        .toEpochMilli();
+  }
+
+  /** The start of a day in the time zone of occasions, in milliseconds since the epoch. */
+  public long getStartOfDayMillis(LocalDate date) {
+    return date.atStartOfDay(zone).toInstant().toEpochMilli();
+  }
+
+  /** Today, in the time zone of occasions. */
+  public LocalDate today() {
+    return LocalDate.now(zone);
+  }
+}
@@ -15,7 +15,11 @@ import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.json.Json;
 import javax.json.JsonArray;
@@ -52,7 +56,8 @@ public class Occasion {
                      userid: 0003,
                      amount: 50
                    }
-                 ]
+                 ],
+        contributionTotalCents: 12000
      }
   */
 
@@ -72,6 +77,9 @@ public class Occasion {
   public static final String OCCASION_CONTRIBUTIONS_KEY = "contributions";
   public static final String OCCASION_CONTRIBUTION_AMOUNT_KEY = "amount";
   public static final String OCCASION_CONTRIBUTION_USER_ID_KEY = "userId";
+  public static final String OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY = "contributionTotalCents";
+  public static final String OCCASION_NOTIFY_AT_KEY = "notifyAt";
+  public static final String OCCASION_ANCHOR_DATE_KEY = "anchorDate";
 
   /*
    * Occasion Values
@@ -83,11 +91,31 @@ public class Occasion {
   private String name;
   private String organizerId;
   private String recipientId;
-  private List<Contribution> contributions;
+  private ContributionStore contributions;
 
+  /**
+   * When the occasion is notified, in milliseconds since the epoch, or null if it has not been
+   * worked out. The service works it out from the date when the occasion is stored, so it is not
+   * read from or written to JSON.
+   */
+  private Long notifyAt;
+
+  /**
+   * The date a recurring occasion was first on, or null if it has not recurred yet. Each occurrence
+   * is worked out from this date, so an occasion on the 31st of a month or on February 29th comes
+   * back to that day when the month or year has one. The service keeps it, so it is not read from
+   * or written to JSON.
+   */
+  private String anchorDate;
+
+  /**
+   * One user's contribution. The amount is given in dollars, but kept in whole cents. Occasions
+   * keep their contributions in a {@link ContributionStore}, and only build these when asked for
+   * them.
+   */
   public static class Contribution {
     private String contributionUserId;
-    private double amount;
+    private long cents;
 
     /*
      * Static list helpers
@@ -107,7 +135,7 @@ public class Occasion {
     }
 
     public static BasicDBList listToDBList(List<Contribution> contributions) {
-      String method = "listToString";
+      String method = "listToDBList";
       logger.entering(clazz, method);
       BasicDBList dbl = new BasicDBList();
       for (Contribution contribution : ListUtils.emptyIfNull(contributions)) {
@@ -138,7 +166,7 @@ public class Occasion {
         contributions.add(new Contribution((JsonObject) json));
       }
 
-      logger.exiting(clazz, method, listToString(contributions));
+      logger.exiting(clazz, method, contributions);
       return contributions;
     }
 
@@ -151,20 +179,50 @@ public class Occasion {
         contributions.add(new Contribution((BasicDBObject) dbo));
       }
 
-      logger.exiting(clazz, method, listToString(contributions));
+      logger.exiting(clazz, method, contributions);
       return contributions;
     }
 
+    /**
+     * Compare two lists of contributions, ignoring their order. The contributions of one list are
+     * counted in a hash map, so the comparison takes time in proportion to the length of the lists.
+     */
     public static boolean listsEqual(List<Contribution> list1, List<Contribution> list2) {
-      for (Contribution p1 : ListUtils.emptyIfNull(list1)) {
-        if (!list2.contains(p1)) return false;
+      List<Contribution> contributions1 = ListUtils.emptyIfNull(list1);
+      List<Contribution> contributions2 = ListUtils.emptyIfNull(list2);
+      if (contributions1.size() != contributions2.size()) {
+        return false;
+      }
+
+      Map<Contribution, Integer> counts = new HashMap<Contribution, Integer>();
+      for (Contribution contribution : contributions1) {
+        counts.merge(contribution, 1, Integer::sum);
       }
-      for (Contribution p2 : ListUtils.emptyIfNull(list2)) {
-        if (!list1.contains(p2)) return false;
+      for (Contribution contribution : contributions2) {
+        Integer count = counts.get(contribution);
+        if (null == count) {
+          return false;
+        } else if (count == 1) {
+          counts.remove(contribution);
+        } else {
+          counts.put(contribution, count - 1);
+        }
       }
       return true;
     }
 
+    /**
+     * A hash code for a list of contributions that, like {@link #listsEqual}, does not depend on
+     * their order.
+     */
+    public static int listHashCode(List<Contribution> contributions) {
+      int hash = 0;
+      for (Contribution contribution : ListUtils.emptyIfNull(contributions)) {
+        hash += contribution.hashCode();
+      }
+      return hash;
+    }
+
     /*
      * Constructors
      */
@@ -177,9 +235,10 @@ public class Occasion {
       logger.entering(clazz, method, dbo);
 
       setUserId((String) dbo.get(OCCASION_CONTRIBUTION_USER_ID_KEY));
-      setAmount((Double) dbo.get(OCCASION_CONTRIBUTION_AMOUNT_KEY));
+      Number amount = (Number) dbo.get(OCCASION_CONTRIBUTION_AMOUNT_KEY);
+      setAmount((amount == null) ? 0 : amount.doubleValue());
 
-      logger.exiting(clazz, method, "amount: " + getAmount() + ", userId: " + getUserId());
+      logger.exiting(clazz, method, this);
     }
 
     public Contribution(JsonObject json) {
@@ -191,7 +250,7 @@ public class Occasion {
       JsonNumber amount = json.getJsonNumber(OCCASION_CONTRIBUTION_AMOUNT_KEY);
       setAmount((amount == null) ? 0 : amount.doubleValue());
 
-      logger.exiting(clazz, method, "amount: " + getAmount() + ", userId: " + getUserId());
+      logger.exiting(clazz, method, this);
     }
 
     public Contribution(String contributionUserId, double amount) {
@@ -201,7 +260,14 @@ public class Occasion {
       setUserId(contributionUserId);
       setAmount(amount);
 
-      logger.exiting(clazz, method, "amount: " + getAmount() + ", userId: " + getUserId());
+      logger.exiting(clazz, method, this);
+    }
+
+    /** A contribution of an amount in cents. */
+    public static Contribution ofCents(String contributionUserId, long cents) {
+      Contribution contribution = new Contribution(contributionUserId, 0);
+      contribution.setCents(cents);
+      return contribution;
     }
 
     /*
@@ -216,24 +282,32 @@ public class Occasion {
     }
 
     public void setAmount(double amount) {
-      this.amount = amount;
+      this.cents = ContributionStore.toCents(amount);
     }
 
     public double getAmount() {
-      return amount;
+      return ContributionStore.toAmount(cents);
+    }
+
+    public void setCents(long cents) {
+      this.cents = cents;
+    }
+
+    public long getCents() {
+      return cents;
     }
 
     /*
      * Conversion methods
      */
     public BasicDBObject toDbo() {
-      return new BasicDBObject(OCCASION_CONTRIBUTION_AMOUNT_KEY, amount)
+      return new BasicDBObject(OCCASION_CONTRIBUTION_AMOUNT_KEY, getAmount())
           .append(OCCASION_CONTRIBUTION_USER_ID_KEY, contributionUserId);
     }
 
     public JsonObject toJson() {
       return Json.createObjectBuilder()
-          .add(OCCASION_CONTRIBUTION_AMOUNT_KEY, amount)
+          .add(OCCASION_CONTRIBUTION_AMOUNT_KEY, getAmount())
           .add(OCCASION_CONTRIBUTION_USER_ID_KEY, contributionUserId)
           .build();
     }
@@ -245,15 +319,20 @@ public class Occasion {
 
     @Override
     public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof Contribution)) {
+        return false;
+      }
       Contribution contribution = (Contribution) object;
-      if (null == contribution) return false;
-      return (getUserId().equals(contribution.getUserId())
-          && (getAmount() == contribution.getAmount()));
+      return Objects.equals(getUserId(), contribution.getUserId())
+          && getCents() == contribution.getCents();
     }
 
     @Override
     public int hashCode() {
-      return this.toString().length();
+      return 31 * Objects.hashCode(contributionUserId) + Long.hashCode(cents);
     }
   }
 
@@ -324,10 +403,24 @@ public class Occasion {
     setOrganizerId((String) dbo.get(OCCASION_ORGANIZER_ID_KEY));
     setContributions(Contribution.dbListToList((BasicDBList) dbo.get(OCCASION_CONTRIBUTIONS_KEY)));
     setRecipientId((String) dbo.get(OCCASION_RECIPIENT_ID_KEY));
+    Number notifyAt = (Number) dbo.get(OCCASION_NOTIFY_AT_KEY);
+    setNotifyAt((notifyAt == null) ? null : notifyAt.longValue());
+    setAnchorDate((String) dbo.get(OCCASION_ANCHOR_DATE_KEY));
 
     logger.exiting(clazz, method, this);
   }
 
+  /** An empty occasion, for {@link OccasionDecoder} to fill in as it reads a document. */
+  Occasion() {
+    setDate((String) null);
+    setGroupId(null);
+    setInterval(null);
+    setName(null);
+    setOrganizerId(null);
+    setRecipientId(null);
+    setContributions((List<Contribution>) null);
+  }
+
   public Occasion(
       ObjectId id,
       String date,
@@ -341,15 +434,6 @@ public class Occasion {
     String method = "Occasion";
     logger.entering(clazz, method);
 
-    logger.fine("id: " + id);
-    logger.fine("date: " + date);
-    logger.fine("groupId: " + groupId);
-    logger.fine("interval: " + interval);
-    logger.fine("name: " + name);
-    logger.fine("organizerId: " + organizerId);
-    logger.fine("recipientId: " + recipientId);
-    logger.fine("contributions: " + Contribution.listToString(contributions));
-
     setId(id);
     setDate(date);
     setGroupId(groupId);
@@ -358,6 +442,7 @@ public class Occasion {
     setOrganizerId(organizerId);
     setRecipientId(recipientId);
     setContributions(contributions);
+    logFields();
 
     logger.exiting(clazz, method, this);
   }
@@ -443,24 +528,35 @@ public class Occasion {
 
   public void setContributions(JsonValue contributions) {
     if (null == contributions || contributions.toString().isEmpty()) {
-      this.contributions = new ArrayList<Contribution>();
+      this.contributions = new ContributionStore();
     } else {
-      this.contributions = Contribution.jsonArrayToList((JsonArray) contributions);
+      this.contributions = new ContributionStore();
+      for (JsonValue json : (JsonArray) contributions) {
+        Contribution contribution = new Contribution((JsonObject) json);
+        this.contributions.add(contribution.getUserId(), contribution.getCents());
+      }
     }
   }
 
   public void setContributions(List<Contribution> contributions) {
-    if (null == contributions || 1 > contributions.size()) {
-      this.contributions = new ArrayList<>();
-    } else {
-      this.contributions = contributions;
-    }
+    this.contributions = new ContributionStore(contributions);
   }
 
+  /** The contributions, as a list that reads through to the store and can't be changed. */
   public List<Contribution> getContributions() {
+    return contributions.asList();
+  }
+
+  /** The contributions, to read or change without building a Contribution for each one. */
+  public ContributionStore getContributionStore() {
     return contributions;
   }
 
+  /** The total of the contributions, in cents. */
+  public long getContributionTotalCents() {
+    return contributions.getTotalCents();
+  }
+
   public void setRecipientId(String recipientId) {
     if (null == recipientId || recipientId.isEmpty()) {
       this.recipientId = "";
@@ -473,6 +569,22 @@ public class Occasion {
     return recipientId;
   }
 
+  public void setNotifyAt(Long notifyAt) {
+    this.notifyAt = notifyAt;
+  }
+
+  public Long getNotifyAt() {
+    return notifyAt;
+  }
+
+  public void setAnchorDate(String anchorDate) {
+    this.anchorDate = anchorDate;
+  }
+
+  public String getAnchorDate() {
+    return anchorDate;
+  }
+
   /*
    * Conversion methods
    */
@@ -480,14 +592,7 @@ public class Occasion {
     String method = "toDbo";
     logger.entering(clazz, method);
 
-    logger.fine("id: " + id);
-    logger.fine("date: " + date);
-    logger.fine("groupId: " + groupId);
-    logger.fine("interval: " + interval);
-    logger.fine("name: " + name);
-    logger.fine("organizerId: " + organizerId);
-    logger.fine("recipientId: " + recipientId);
-    logger.fine("contributions: " + Contribution.listToString(contributions));
+    logFields();
 
     // build the db object
     BasicDBObject dbo = new BasicDBObject();
@@ -519,9 +624,19 @@ public class Occasion {
       dbo.append(OCCASION_RECIPIENT_ID_KEY, recipientId);
     }
 
-    BasicDBList contributionDbList = Contribution.listToDBList(contributions);
-    if (null != contributionDbList && !contributionDbList.isEmpty()) {
-      dbo.append(OCCASION_CONTRIBUTIONS_KEY, contributionDbList);
+    if (null != notifyAt) {
+      dbo.append(OCCASION_NOTIFY_AT_KEY, notifyAt);
+    }
+
+    if (null != anchorDate) {
+      dbo.append(OCCASION_ANCHOR_DATE_KEY, anchorDate);
+    }
+
+    // The total is stored with the contributions, so that adding or changing one contribution can
+    // update the total in the same write with $inc.
+    if (!contributions.isEmpty()) {
+      dbo.append(OCCASION_CONTRIBUTIONS_KEY, Contribution.listToDBList(getContributions()));
+      dbo.append(OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, contributions.getTotalCents());
     }
 
     logger.exiting(clazz, method, dbo);
@@ -532,14 +647,7 @@ public class Occasion {
     String method = "toJson";
     logger.entering(clazz, method);
 
-    logger.fine("id: " + id);
-    logger.fine("date: " + date);
-    logger.fine("groupId: " + groupId);
-    logger.fine("interval: " + interval);
-    logger.fine("name: " + name);
-    logger.fine("organizerId: " + organizerId);
-    logger.fine("recipientId: " + recipientId);
-    logger.fine("contributions: " + Contribution.listToString(contributions));
+    logFields();
 
     JsonObjectBuilder jsonBuilder = Json.createObjectBuilder();
     if (null != id && ObjectId.isValid(id.toString())) {
@@ -570,15 +678,9 @@ public class Occasion {
       jsonBuilder.add(OCCASION_RECIPIENT_ID_KEY, recipientId);
     }
 
-    JsonArrayBuilder contributionArrayBuilder = Json.createArrayBuilder();
-    for (Contribution contribution : ListUtils.emptyIfNull(contributions)) {
-      JsonObject contributionJson = contribution.toJson();
-      contributionArrayBuilder.add(contributionJson);
-    }
-    JsonArray contributions = contributionArrayBuilder.build();
-
-    if (null != contributions && !contributions.isEmpty()) {
-      jsonBuilder.add(OCCASION_CONTRIBUTIONS_KEY, contributions);
+    if (!contributions.isEmpty()) {
+      jsonBuilder.add(OCCASION_CONTRIBUTIONS_KEY, Contribution.listToJsonArray(getContributions()));
+      jsonBuilder.add(OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, contributions.getTotalCents());
     }
 
     JsonObject json = jsonBuilder.build();
@@ -586,29 +688,67 @@ public class Occasion {
     return json;
   }
 
+  /**
+   * Log each field at FINE. The messages are only built when FINE is enabled, since the
+   * contributions are converted to JSON to log them.
+   */
+  private void logFields() {
+    if (!logger.isLoggable(Level.FINE)) {
+      return;
+    }
+    logger.fine("id: " + id);
+    logger.fine("date: " + date);
+    logger.fine("groupId: " + groupId);
+    logger.fine("interval: " + interval);
+    logger.fine("name: " + name);
+    logger.fine("organizerId: " + organizerId);
+    logger.fine("recipientId: " + recipientId);
+    logger.fine("notifyAt: " + notifyAt);
+    logger.fine("contributions: " + Contribution.listToString(getContributions()));
+  }
+
   @Override
   public String toString() {
     return toJson().toString();
   }
 
+  /**
+   * Occasions that have been stored are equal if they have the same ID. Occasions that have not
+   * been stored yet, and so have no ID, are equal if all their fields are, with the contributions
+   * in any order.
+   */
   @Override
   public boolean equals(Object object) {
-    Occasion occasion = (Occasion) object;
-    if (null == getId() || null == occasion.getId()) {
-      return (getGroupId().equals(occasion.getGroupId())
-          && getDate().equals(occasion.getDate())
-          && getInterval().equals(occasion.getInterval())
-          && getName().equals(occasion.getName())
-          && getOrganizerId().equals(occasion.getOrganizerId())
-          && getRecipientId().equals(occasion.getRecipientId())
-          && Contribution.listsEqual(getContributions(), occasion.getContributions()));
-    } else {
-      return getId().equals(occasion.getId());
+    if (this == object) {
+      return true;
+    }
+    if (!(object instanceof Occasion)) {
+      return false;
     }
+    Occasion occasion = (Occasion) object;
+    if (null != getId() || null != occasion.getId()) {
+      return Objects.equals(getId(), occasion.getId());
+    }
+    return (getGroupId().equals(occasion.getGroupId())
+        && getDate().equals(occasion.getDate())
+        && getInterval().equals(occasion.getInterval())
+        && getName().equals(occasion.getName())
+        && getOrganizerId().equals(occasion.getOrganizerId())
+        && getRecipientId().equals(occasion.getRecipientId())
+        && Contribution.listsEqual(getContributions(), occasion.getContributions()));
   }
 
   @Override
   public int hashCode() {
-    return this.toString().length();
+    if (null != id) {
+      return id.hashCode();
+    }
+    int hash = groupId.hashCode();
+    hash = 31 * hash + date.hashCode();
+    hash = 31 * hash + interval.hashCode();
+    hash = 31 * hash + name.hashCode();
+    hash = 31 * hash + organizerId.hashCode();
+    hash = 31 * hash + recipientId.hashCode();
+    return 31 * hash + Contribution.listHashCode(getContributions());
   }
 }
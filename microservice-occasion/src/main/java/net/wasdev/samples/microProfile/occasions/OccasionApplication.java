@@ -13,12 +13,14 @@ package net.wasdev.samples.microProfile.occasions;
 import java.util.HashSet;
 import java.util.Set;
 import javax.ws.rs.core.Application;
+import net.wasdev.samples.microprofile.mongo.DocumentViewWriter;
 
 public class OccasionApplication extends Application {
   @Override
   public Set<Class<?>> getClasses() {
     Set<Class<?>> classes = new HashSet<Class<?>>();
     classes.add(OccasionResource.class);
+    classes.add(DocumentViewWriter.class);
     return classes;
   }
 }
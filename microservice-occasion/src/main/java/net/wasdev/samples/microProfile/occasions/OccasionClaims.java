@@ -0,0 +1,144 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Claims due occasions in the database, so that when more than one replica of this service is
+ * running, each occasion is notified by only one of them.
+ *
+ * <p>Every replica schedules the same occasions. When an occasion is due, each replica tries to
+ * claim it by setting a lease on the occasion document with an atomic findAndModify. Only the one
+ * that wins the claim notifies the occasion. A finished occasion is removed from the database, or
+ * moved on to its next date with its lease removed if it recurs, so a lease that has run out
+ * belongs to a replica that stopped before it finished. Those occasions are found by {@link
+ * #findExpired()} and claimed again.
+ */
+@ApplicationScoped
+public class OccasionClaims {
+  private static final String clazz = OccasionClaims.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The replica that holds the claim on an occasion. */
+  public static final String OCCASION_CLAIMED_BY_KEY = "claimedBy";
+
+  /** When the claim on an occasion runs out. */
+  public static final String OCCASION_LEASE_UNTIL_KEY = "leaseUntil";
+
+  /** Access to MongoDB. */
+  @Inject private MongoAccess mongo;
+
+  /** How long a replica has to notify an occasion before another replica can claim it. */
+  @Inject
+  @ConfigProperty(name = "occasion.claim.lease.minutes", defaultValue = "10")
+  private int leaseMinutes;
+
+  /** The name this replica claims occasions under. Defaults to the process name (pid@host). */
+  @Inject
+  @ConfigProperty(name = "occasion.node.id", defaultValue = "")
+  private String nodeId;
+
+  /* following for jmock unit tests */
+  public void setMongoAccess(MongoAccess mongo) {
+    this.mongo = mongo;
+  }
+
+  /* following for jmock unit tests */
+  public void setLeaseMinutes(int leaseMinutes) {
+    this.leaseMinutes = leaseMinutes;
+  }
+
+  /**
+   * Try to claim an occasion for this replica.
+   *
+   * @param occasion The occasion that is due.
+   * @return true if this replica should notify the occasion. false if another replica holds the
+   *     claim, or the occasion is no longer in the database.
+   */
+  public boolean claim(Occasion occasion) {
+    String method = "claim";
+    logger.entering(clazz, method, occasion.getId());
+
+    Date now = new Date();
+
+    // The occasion is free if nobody has claimed it, or the claim has run out.
+    BasicDBList unclaimed = new BasicDBList();
+    unclaimed.add(new BasicDBObject(OCCASION_LEASE_UNTIL_KEY, new BasicDBObject("$exists", false)));
+    unclaimed.add(new BasicDBObject(OCCASION_LEASE_UNTIL_KEY, new BasicDBObject("$lt", now)));
+
+    // Match the date too, so we don't claim an occasion that was moved since we scheduled it.
+    BasicDBObject query =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, occasion.getId())
+            .append(Occasion.OCCASION_DATE_KEY, occasion.getDate())
+            .append("$or", unclaimed);
+    BasicDBObject update =
+        new BasicDBObject(
+            "$set",
+            new BasicDBObject(OCCASION_CLAIMED_BY_KEY, getNodeId())
+                .append(OCCASION_LEASE_UNTIL_KEY, new Date(now.getTime() + getLeaseMillis())));
+
+    boolean claimed = getCollection().findAndModify(query, update) != null;
+
+    logger.exiting(clazz, method, claimed);
+    return claimed;
+  }
+
+  /** Find the occasions whose claim ran out before they were notified. */
+  public List<Occasion> findExpired() {
+    BasicDBObject query =
+        new BasicDBObject(OCCASION_LEASE_UNTIL_KEY, new BasicDBObject("$lt", new Date()));
+
+    List<Occasion> expired = new ArrayList<Occasion>();
+    try (DBCursor cursor = getCollection().find(query)) {
+      while (cursor.hasNext()) {
+        DBObject dbOccasion = cursor.next();
+        logger.log(
+            Level.INFO,
+            "Claim on occasion {0} by {1} has expired",
+            new Object[] {
+              dbOccasion.get(Occasion.OCCASION_ID_KEY), dbOccasion.get(OCCASION_CLAIMED_BY_KEY)
+            });
+        expired.add(new Occasion(dbOccasion));
+      }
+    }
+    return expired;
+  }
+
+  public long getLeaseMillis() {
+    return TimeUnit.MINUTES.toMillis(Math.max(leaseMinutes, 1));
+  }
+
+  public String getNodeId() {
+    if (nodeId == null || nodeId.isEmpty()) {
+      nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    }
+    return nodeId;
+  }
+
+  private DBCollection getCollection() {
+    return mongo.getMongoDB().getCollection("occasions");
+  }
+}
@@ -0,0 +1,267 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCallback;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import java.io.IOException;
+import java.io.InputStream;
+import org.bson.BasicBSONDecoder;
+import org.bson.EmptyBSONCallback;
+import org.bson.types.ObjectId;
+
+/**
+ * Decodes occasion documents straight into {@link Occasion}s.
+ *
+ * <p>The driver's default decoder builds a BasicDBObject for each document, and a BasicDBList and
+ * BasicDBObjects for its contributions, only for Occasion to copy the fields back out of them. This
+ * decoder sets the fields on the Occasion as the BSON is read. Set it on a cursor with {@code
+ * cursor.setDecoderFactory(OccasionDecoder.FACTORY)}, and get the Occasion from each document that
+ * the cursor returns with {@link #toOccasion}. Fields that an Occasion does not have are skipped.
+ */
+public class OccasionDecoder extends BasicBSONDecoder implements DBDecoder {
+
+  public static final DBDecoderFactory FACTORY = OccasionDecoder::new;
+
+  /**
+   * Get the occasion from a document. Documents that were not read with this decoder are converted
+   * the usual way.
+   */
+  public static Occasion toOccasion(DBObject dbo) {
+    if (dbo instanceof DecodedOccasion) {
+      return ((DecodedOccasion) dbo).occasion;
+    }
+    return new Occasion(dbo);
+  }
+
+  @Override
+  public DBCallback getDBCallback(DBCollection collection) {
+    return new OccasionCallback();
+  }
+
+  @Override
+  public DBObject decode(byte[] bytes, DBCollection collection) {
+    OccasionCallback callback = new OccasionCallback();
+    decode(bytes, callback);
+    return (DBObject) callback.get();
+  }
+
+  @Override
+  public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+    OccasionCallback callback = new OccasionCallback();
+    decode(in, callback);
+    return (DBObject) callback.get();
+  }
+
+  /**
+   * The document handed back to the driver. It only carries the occasion, except when a query fails
+   * and the server returns an error document instead: the error fields are kept, so that the driver
+   * can report the error.
+   */
+  private static class DecodedOccasion extends BasicDBObject {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Occasion occasion;
+
+    DecodedOccasion(Occasion occasion) {
+      this.occasion = occasion;
+    }
+  }
+
+  /** Sets the fields of the occasion as the decoder reads them. */
+  private static class OccasionCallback extends EmptyBSONCallback implements DBCallback {
+    /** The nesting level: 1 for the fields of the occasion, 3 for those of a contribution. */
+    private int depth = 0;
+
+    private boolean inContributions = false;
+    private Occasion occasion;
+    private DecodedOccasion decoded;
+    private String contributionUserId;
+    private double contributionAmount;
+
+    @Override
+    public void reset() {
+      depth = 0;
+      inContributions = false;
+      occasion = null;
+      decoded = null;
+    }
+
+    @Override
+    public Object get() {
+      return decoded;
+    }
+
+    @Override
+    public void objectStart() {
+      occasion = new Occasion();
+      decoded = new DecodedOccasion(occasion);
+      depth = 1;
+    }
+
+    @Override
+    public void objectStart(String name) {
+      depth++;
+      if (depth == 3 && inContributions) {
+        contributionUserId = null;
+        contributionAmount = 0;
+      }
+    }
+
+    @Override
+    public Object objectDone() {
+      if (depth == 3 && inContributions) {
+        occasion
+            .getContributionStore()
+            .add(contributionUserId, ContributionStore.toCents(contributionAmount));
+      }
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void arrayStart(String name) {
+      depth++;
+      if (depth == 2) {
+        inContributions = Occasion.OCCASION_CONTRIBUTIONS_KEY.equals(name);
+      }
+    }
+
+    @Override
+    public Object arrayDone() {
+      if (depth == 2) {
+        inContributions = false;
+      }
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void gotObjectId(String name, ObjectId id) {
+      if (depth == 1 && Occasion.OCCASION_ID_KEY.equals(name)) {
+        occasion.setId(id);
+      }
+    }
+
+    @Override
+    public void gotString(String name, String value) {
+      if (depth == 1) {
+        switch (name) {
+          case Occasion.OCCASION_DATE_KEY:
+            occasion.setDate(value);
+            break;
+          case Occasion.OCCASION_GROUP_ID_KEY:
+            occasion.setGroupId(value);
+            break;
+          case Occasion.OCCASION_INTERVAL_KEY:
+            occasion.setInterval(value);
+            break;
+          case Occasion.OCCASION_NAME_KEY:
+            occasion.setName(value);
+            break;
+          case Occasion.OCCASION_ORGANIZER_ID_KEY:
+            occasion.setOrganizerId(value);
+            break;
+          case Occasion.OCCASION_RECIPIENT_ID_KEY:
+            occasion.setRecipientId(value);
+            break;
+          case Occasion.OCCASION_ANCHOR_DATE_KEY:
+            occasion.setAnchorDate(value);
+            break;
+          case "$err":
+            decoded.put(name, value);
+            break;
+          default:
+            break;
+        }
+      } else if (depth == 3
+          && inContributions
+          && Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY.equals(name)) {
+        contributionUserId = value;
+      }
+    }
+
+    @Override
+    public void gotDouble(String name, double value) {
+      gotAmount(name, value);
+    }
+
+    @Override
+    public void gotInt(String name, int value) {
+      gotAmount(name, value);
+      if (depth == 1 && "code".equals(name)) {
+        decoded.put(name, value);
+      }
+    }
+
+    @Override
+    public void gotLong(String name, long value) {
+      gotAmount(name, value);
+      if (depth == 1 && Occasion.OCCASION_NOTIFY_AT_KEY.equals(name)) {
+        occasion.setNotifyAt(value);
+      }
+    }
+
+    private void gotAmount(String name, double value) {
+      if (depth == 3 && inContributions && Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY.equals(name)) {
+        contributionAmount = value;
+      }
+    }
+
+    // The occasion has no fields of the other types, so they are skipped.
+
+    @Override
+    public void gotNull(String name) {}
+
+    @Override
+    public void gotUndefined(String name) {}
+
+    @Override
+    public void gotMinKey(String name) {}
+
+    @Override
+    public void gotMaxKey(String name) {}
+
+    @Override
+    public void gotBoolean(String name, boolean value) {}
+
+    @Override
+    public void gotDate(String name, long millis) {}
+
+    @Override
+    public void gotSymbol(String name, String symbol) {}
+
+    @Override
+    public void gotRegex(String name, String pattern, String flags) {}
+
+    @Override
+    public void gotTimestamp(String name, int time, int increment) {}
+
+    @Override
+    public void gotDBRef(String name, String namespace, ObjectId id) {}
+
+    @Override
+    public void gotBinary(String name, byte type, byte[] data) {}
+
+    @Override
+    public void gotUUID(String name, long part1, long part2) {}
+
+    @Override
+    public void gotCode(String name, String code) {}
+
+    @Override
+    public void gotCodeWScope(String name, String code, Object scope) {}
+  }
+}
@@ -0,0 +1,262 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+
+/**
+ * Moves occasions that recur on to their next date once they have been notified, instead of
+ * removing them.
+ *
+ * <p>The interval of an occasion says how often it recurs: annual (or yearly), monthly, weekly or
+ * daily. Occasions with any other interval happen once. Each occurrence is a whole number of
+ * intervals after the anchor date, the date the occasion was on before it first recurred, which is
+ * kept on the occasion. Adding months or years to the end of a month gives the last day of the
+ * shorter month, so a monthly occasion on January 31st is on February 28th, then March 31st, and a
+ * yearly one on February 29th is on February 28th, then back on February 29th in the next leap
+ * year. An occasion whose date or interval is changed starts again from its new date.
+ *
+ * <p>Moving an occasion on is one atomic update of the occasion: its date and notification time are
+ * set to the next occurrence, its contributions are removed and their total set to zero, and its
+ * claim is released. The update only applies to the occasion on the date that was notified, so a
+ * replica that notifies late, or an occasion that was moved in the meantime, is not moved twice.
+ * The contributions of the run are then recorded in the history collection, under an ID made of the
+ * occasion ID and the date of the run, so recording the same run again overwrites it.
+ */
+@ApplicationScoped
+public class OccasionRecurrence {
+  private static final String clazz = OccasionRecurrence.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The collection that the contributions of each run of an occasion are recorded in. */
+  public static final String HISTORY_COLLECTION = "occasionHistory";
+
+  /*
+   * History Keys
+   */
+  public static final String HISTORY_OCCASION_ID_KEY = "occasionId";
+  public static final String HISTORY_DATE_KEY = "date";
+  public static final String HISTORY_GROUP_ID_KEY = "groupId";
+  public static final String HISTORY_NAME_KEY = "name";
+  public static final String HISTORY_RECIPIENT_ID_KEY = "recipientId";
+  public static final String HISTORY_CONTRIBUTION_COUNT_KEY = "contributionCount";
+  public static final String HISTORY_CONTRIBUTION_TOTAL_CENTS_KEY = "contributionTotalCents";
+  public static final String HISTORY_NOTIFIED_AT_KEY = "notifiedAt";
+
+  /** Access to MongoDB. */
+  @Inject private MongoAccess mongo;
+
+  /* following for jmock unit tests */
+  public void setMongoAccess(MongoAccess mongo) {
+    this.mongo = mongo;
+  }
+
+  /** True if occasions with this interval recur. */
+  public static boolean recurs(String interval) {
+    return null != unitOf(interval);
+  }
+
+  /**
+   * The date one interval after another.
+   *
+   * @param date The date.
+   * @param interval The interval, for example "annual".
+   * @return The next date, or null if the interval does not recur.
+   */
+  public static LocalDate nextDate(LocalDate date, String interval) {
+    ChronoUnit unit = unitOf(interval);
+    return (null == unit) ? null : date.plus(1, unit);
+  }
+
+  /**
+   * The next occurrence of an occasion that is after its date and notified after a time.
+   * Occurrences that were missed, because the occasion was notified late, are skipped. They are
+   * skipped in one step rather than one at a time, so an occasion that is far behind costs no more
+   * than one that is on time.
+   *
+   * @param occasion The occasion.
+   * @param notificationTime Works out when each occurrence is notified.
+   * @param afterMillis The time, in milliseconds since the epoch, the occurrence must come after.
+   * @return The date of the next occurrence, or null if the occasion does not recur.
+   * @throws java.time.format.DateTimeParseException If the date of the occasion is not valid.
+   */
+  public static LocalDate nextOccurrence(
+      Occasion occasion, NotificationTime notificationTime, long afterMillis) {
+    ChronoUnit unit = unitOf(occasion.getInterval());
+    if (null == unit) {
+      return null;
+    }
+
+    // Skip the occurrences up to two days before the time, which have been notified in every time
+    // zone, and up to the date of the occasion.
+    LocalDate current = LocalDate.parse(occasion.getDate());
+    LocalDate anchor = getAnchorDate(occasion, current, unit);
+    LocalDate skipTo =
+        Instant.ofEpochMilli(afterMillis).atOffset(ZoneOffset.UTC).toLocalDate().minusDays(2);
+    if (skipTo.isBefore(current)) {
+      skipTo = current;
+    }
+    long intervals = Math.max(0, unit.between(anchor, skipTo));
+
+    LocalDate date;
+    do {
+      intervals++;
+      date = anchor.plus(intervals, unit);
+    } while (!date.isAfter(current)
+        || notificationTime.getNotifyAtMillis(date, occasion.getGroupId()) <= afterMillis);
+    return date;
+  }
+
+  /**
+   * The date an occasion's occurrences are worked out from. The anchor date only counts while the
+   * occasion's date is one of its occurrences. If the date or the interval has been changed since,
+   * the occasion starts again from its date.
+   */
+  private static LocalDate getAnchorDate(Occasion occasion, LocalDate current, ChronoUnit unit) {
+    if (null != occasion.getAnchorDate()) {
+      LocalDate anchor = LocalDate.parse(occasion.getAnchorDate());
+      long intervals = unit.between(anchor, current);
+      if (!anchor.isAfter(current)
+          && (anchor.plus(intervals, unit).equals(current)
+              || anchor.plus(intervals + 1, unit).equals(current))) {
+        return anchor;
+      }
+    }
+    return current;
+  }
+
+  /** The unit of an interval, or null if the interval does not recur. */
+  private static ChronoUnit unitOf(String interval) {
+    if (null == interval) {
+      return null;
+    }
+    switch (interval.trim().toLowerCase()) {
+      case "annual":
+      case "annually":
+      case "yearly":
+        return ChronoUnit.YEARS;
+      case "monthly":
+        return ChronoUnit.MONTHS;
+      case "weekly":
+        return ChronoUnit.WEEKS;
+      case "daily":
+        return ChronoUnit.DAYS;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Move an occasion that has been notified on to its next occurrence, and record the contributions
+   * of the run that was notified.
+   *
+   * @param occasion The occasion that was notified.
+   * @param notificationTime Works out when the next occurrence is notified.
+   * @return The occasion at its next occurrence, or null if the occasion does not recur, or was
+   *     changed, moved on or removed since it was notified.
+   */
+  public Occasion recur(Occasion occasion, NotificationTime notificationTime) {
+    String method = "recur";
+    logger.entering(clazz, method, occasion.getId());
+
+    long now = System.currentTimeMillis();
+    LocalDate nextDate = nextOccurrence(occasion, notificationTime, now);
+    if (null == nextDate) {
+      logger.exiting(clazz, method, null);
+      return null;
+    }
+    String nextDateString = nextDate.toString();
+    String anchorDateString =
+        getAnchorDate(occasion, LocalDate.parse(occasion.getDate()), unitOf(occasion.getInterval()))
+            .toString();
+    long nextNotifyAt = notificationTime.getNotifyAtMillis(nextDate, occasion.getGroupId());
+
+    BasicDBObject query =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, occasion.getId())
+            .append(Occasion.OCCASION_DATE_KEY, occasion.getDate());
+    BasicDBObject update =
+        new BasicDBObject(
+                "$set",
+                new BasicDBObject(Occasion.OCCASION_DATE_KEY, nextDateString)
+                    .append(Occasion.OCCASION_NOTIFY_AT_KEY, nextNotifyAt)
+                    .append(Occasion.OCCASION_ANCHOR_DATE_KEY, anchorDateString)
+                    .append(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, 0L))
+            .append(
+                "$unset",
+                new BasicDBObject(Occasion.OCCASION_CONTRIBUTIONS_KEY, "")
+                    .append(OccasionClaims.OCCASION_CLAIMED_BY_KEY, "")
+                    .append(OccasionClaims.OCCASION_LEASE_UNTIL_KEY, ""));
+
+    // Return the occasion as it was, so that the contributions that were removed are recorded.
+    DBObject previous =
+        getCollection().findAndModify(query, null, null, false, update, false, false);
+    if (null == previous) {
+      logger.log(Level.FINE, "Occasion {0} was changed or removed", occasion.getId());
+      logger.exiting(clazz, method, null);
+      return null;
+    }
+
+    Occasion run = new Occasion(previous);
+    try {
+      recordRun(run, now);
+    } catch (Throwable t) {
+      // The occasion has moved on already, so only this run's record is lost.
+      logger.log(Level.WARNING, "Could not record the run of occasion " + occasion.getId(), t);
+    }
+
+    Occasion next = new Occasion(previous);
+    next.setDate(nextDateString);
+    next.setNotifyAt(nextNotifyAt);
+    next.setAnchorDate(anchorDateString);
+    next.setContributions(Collections.<Contribution>emptyList());
+
+    logger.exiting(clazz, method, nextDateString);
+    return next;
+  }
+
+  /** Record the contributions of one run of an occasion. */
+  private void recordRun(Occasion run, long notifiedAt) {
+    String historyId = run.getId() + "/" + run.getDate();
+    BasicDBObject record =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, historyId)
+            .append(HISTORY_OCCASION_ID_KEY, run.getId())
+            .append(HISTORY_DATE_KEY, run.getDate())
+            .append(HISTORY_GROUP_ID_KEY, run.getGroupId())
+            .append(HISTORY_NAME_KEY, run.getName())
+            .append(HISTORY_RECIPIENT_ID_KEY, run.getRecipientId())
+            .append(HISTORY_CONTRIBUTION_COUNT_KEY, run.getContributionStore().size())
+            .append(HISTORY_CONTRIBUTION_TOTAL_CENTS_KEY, run.getContributionTotalCents())
+            .append(HISTORY_NOTIFIED_AT_KEY, new Date(notifiedAt));
+    getHistoryCollection()
+        .update(new BasicDBObject(Occasion.OCCASION_ID_KEY, historyId), record, true, false);
+  }
+
+  private DBCollection getCollection() {
+    return mongo.getMongoDB().getCollection("occasions");
+  }
+
+  private DBCollection getHistoryCollection() {
+    return mongo.getMongoDB().getCollection(HISTORY_COLLECTION);
+  }
+}
@@ -10,6 +10,7 @@
 // ******************************************************************************
 package net.wasdev.samples.microProfile.occasions;
 
+import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
@@ -17,7 +18,8 @@ import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.WriteResult;
 import java.text.ParseException;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,10 +27,10 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonBuilderFactory;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -42,6 +44,10 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import net.wasdev.samples.microprofile.mongo.DocumentView;
+import net.wasdev.samples.microprofile.mongo.RawDocument;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
@@ -57,8 +63,35 @@ public class OccasionResource {
   public static final String JSON_KEY_OCCASION_POST_RUN_SUCCESS = "runSuccess";
   public static final String JSON_KEY_OCCASION_POST_RUN_ERROR = "runError";
 
+  // Lookup caches that can be invalidated
+  private static final String CACHE_TYPE_GROUPS = "groups";
+  private static final String CACHE_TYPE_USERS = "users";
+
+  /** The most occasions that can be returned in one page. */
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  /**
+   * How many times to try changing a contribution, when other requests keep changing it in between.
+   */
+  private static final int MAX_CONTRIBUTION_ATTEMPTS = 5;
+
+  /** The fields that can be asked for when listing occasions. */
+  private static final Set<String> LIST_FIELDS =
+      new HashSet<String>(
+          Arrays.asList(
+              Occasion.OCCASION_DATE_KEY,
+              Occasion.OCCASION_GROUP_ID_KEY,
+              Occasion.OCCASION_INTERVAL_KEY,
+              Occasion.OCCASION_NAME_KEY,
+              Occasion.OCCASION_ORGANIZER_ID_KEY,
+              Occasion.OCCASION_RECIPIENT_ID_KEY,
+              Occasion.OCCASION_CONTRIBUTIONS_KEY));
+
   @Inject private Orchestrator orchestrator;
 
+  /** Loads the stored occasions into the orchestrator's schedule. */
+  @Inject private OccasionScheduleLoader scheduleLoader;
+
   /** The JWT of the caller. */
   @Inject private JsonWebToken jwtPrincipal;
 
@@ -67,28 +100,19 @@ public class OccasionResource {
     return occasions.getCollection("occasions");
   }
 
-  /** Read the occasions that are stored in the database and schedule them to run. */
+  /**
+   * Make sure the occasions that are stored in the database are scheduled to run. The loader only
+   * reads the database on the first request; later requests return right away.
+   */
   @PostConstruct
   public void afterCreate() {
     String method = "afterCreate";
     logger.entering(clazz, method);
 
-    orchestrator.setOccasionResource(this);
-
-    DBCollection occasions = getCollection();
-    DBCursor cursor = occasions.find();
-    while (cursor.hasNext()) {
-      DBObject dbOccasion = cursor.next();
-      Occasion occasion = new Occasion(dbOccasion);
-      try {
-        // TODO: There was a comment here about how we should mark the event as
-        //       popped in the database, which will have different meaning for
-        //       one-time or interval occasions.  Need to re-visit this.
-        orchestrator.scheduleOccasion(occasion);
-      } catch (Throwable t) {
-        logger.log(Level.WARNING, "Could not schedule occasion at startup", t);
-      }
-    }
+    // TODO: There was a comment here about how we should mark the event as
+    //       popped in the database, which will have different meaning for
+    //       one-time or interval occasions.  Need to re-visit this.
+    scheduleLoader.start(this);
 
     logger.exiting(clazz, method);
   }
@@ -133,6 +157,22 @@ public class OccasionResource {
                     "Create failed. Payload must not contain an ID. Recieved ID: \"" + id + "\"")
                 .build();
       } else {
+        // Work out when the occasion is notified, and store it with the occasion, so that it
+        // can be scheduled again without parsing the date. An invalid date is left for the
+        // scheduling below to report.
+        try {
+          long notifyAt = orchestrator.computeNotifyAt(occasion);
+          occasion.setNotifyAt(notifyAt);
+          dbo.append(Occasion.OCCASION_NOTIFY_AT_KEY, notifyAt);
+        } catch (ParseException e) {
+          logger.fine("invalid date: " + occasion.getDate());
+        }
+
+        // Store the total even when there are no contributions, so that contributions can be
+        // added to it with $inc.
+        dbo.append(
+            Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, occasion.getContributionTotalCents());
+
         // store the occasion and return the ID
         getCollection().insert(dbo);
         ObjectId occasionId = dbo.getObjectId(Occasion.OCCASION_ID_KEY);
@@ -246,15 +286,23 @@ public class OccasionResource {
     if (!ObjectId.isValid(id)) {
       response = Response.status(400).entity("Invalid occasion id").build();
     } else {
-      // perform the query and return the occasion, if we find one
-      DBObject occasion =
-          getCollection().findOne(new BasicDBObject(Occasion.OCCASION_ID_KEY, new ObjectId(id)));
-      logger.fine("In " + method + " with Occasion: \n\n" + occasion);
-      String occasionJson = new Occasion(occasion).toString();
-      if (null == occasionJson || occasionJson.isEmpty()) {
+      // perform the query and return the occasion, if we find one. The occasion is
+      // written straight from the BSON, without building an Occasion first.
+      RawDocument occasion =
+          RawDocument.findOne(
+              getCollection(), new BasicDBObject(Occasion.OCCASION_ID_KEY, new ObjectId(id)), null);
+      if (null == occasion) {
         response = Response.status(400).entity("no occasion found for given id").build();
+      } else if (!occasion.containsField(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY)) {
+        // The occasion was stored before the total was, so work the total out from the
+        // contributions until the first contribution is added and stores it.
+        response = Response.ok(new Occasion(occasion).toJson(), MediaType.APPLICATION_JSON).build();
       } else {
-        response = Response.ok(occasionJson, MediaType.APPLICATION_JSON).build();
+        DocumentView occasionView =
+            new DocumentView(occasion)
+                .include(Occasion.OCCASION_ID_KEY, Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY)
+                .include(LIST_FIELDS);
+        response = Response.ok(occasionView, MediaType.APPLICATION_JSON).build();
       }
     }
 
@@ -262,10 +310,29 @@ public class OccasionResource {
     return response;
   }
 
+  /**
+   * List the occasions of a group, in order of occasion ID.
+   *
+   * @param groupId The group.
+   * @param after If set, only the occasions after the occasion with this ID are returned. To get
+   *     the next page, pass the ID of the last occasion of the previous page.
+   * @param limit If greater than zero, the most occasions to return.
+   * @param from If set, only the occasions on or after this date (yyyy-MM-dd) are returned.
+   * @param to If set, only the occasions on or before this date (yyyy-MM-dd) are returned.
+   * @param fields If set, a comma separated list of the fields to return, for example "name,date".
+   *     The occasion ID is always returned.
+   * @return The occasions.
+   */
   @GET
   @Path("/")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response retrieveGroupsForOccasion(@QueryParam("groupId") String groupId) {
+  public Response retrieveGroupsForOccasion(
+      @QueryParam("groupId") String groupId,
+      @QueryParam("after") String after,
+      @QueryParam("limit") int limit,
+      @QueryParam("from") String from,
+      @QueryParam("to") String to,
+      @QueryParam("fields") String fields) {
     String method = "retrieveOccasion";
     logger.entering(clazz, method);
 
@@ -282,22 +349,102 @@ public class OccasionResource {
     }
 
     Response response;
+    BasicDBObject query = new BasicDBObject(Occasion.OCCASION_GROUP_ID_KEY, groupId);
+    BasicDBObject projection = getListProjection(fields);
     if (null == groupId || groupId.isEmpty()) {
       response = Response.status(400).entity("invalid group id").build();
+    } else if (null != after && !ObjectId.isValid(after)) {
+      response = Response.status(400).entity("invalid occasion id to start after").build();
+    } else if (limit < 0 || limit > MAX_PAGE_SIZE) {
+      response =
+          Response.status(400).entity("limit must be between 0 and " + MAX_PAGE_SIZE).build();
+    } else if (!isValidDate(from) || !isValidDate(to)) {
+      response = Response.status(400).entity("dates must be in the form yyyy-MM-dd").build();
+    } else if (null == projection) {
+      response = Response.status(400).entity("invalid fields: " + fields).build();
     } else {
-      // perform the query and return the list
-      List<DBObject> occasionList =
+      // Start after the last occasion of the previous page. Since the occasions
+      // are sorted by ID, this is a range on the ID rather than a skip.
+      if (null != after) {
+        query.append(Occasion.OCCASION_ID_KEY, new BasicDBObject("$gt", new ObjectId(after)));
+      }
+
+      // The dates are stored as yyyy-MM-dd strings, so they compare in date order.
+      BasicDBObject dateRange = new BasicDBObject();
+      if (null != from) {
+        dateRange.append("$gte", from);
+      }
+      if (null != to) {
+        dateRange.append("$lte", to);
+      }
+      if (!dateRange.isEmpty()) {
+        query.append(Occasion.OCCASION_DATE_KEY, dateRange);
+      }
+
+      // perform the query and write each occasion as it is read. The index on the group and ID
+      // returns the occasions in order, so each page is read from the index without a sort.
+      DBCursor cursor =
           getCollection()
-              .find(new BasicDBObject(Occasion.OCCASION_GROUP_ID_KEY, groupId))
-              .toArray();
-      JsonArray occasionListJson = Occasion.dboListToJsonArray(occasionList);
-      response = Response.ok(occasionListJson, MediaType.APPLICATION_JSON).build();
+              .find(query, projection)
+              .sort(new BasicDBObject(Occasion.OCCASION_ID_KEY, 1))
+              .setDecoderFactory(OccasionDecoder.FACTORY);
+      if (limit > 0) {
+        cursor.limit(limit);
+      }
+      response = Response.ok(streamOccasions(cursor), MediaType.APPLICATION_JSON).build();
     }
 
     logger.exiting(clazz, method, response);
     return response;
   }
 
+  /**
+   * Build the projection for a list of occasions.
+   *
+   * @param fields A comma separated list of the fields to return, or null for all fields.
+   * @return The projection, or null if one of the fields is not an occasion field.
+   */
+  private static BasicDBObject getListProjection(String fields) {
+    BasicDBObject projection = new BasicDBObject();
+    if (null == fields || fields.isEmpty()) {
+      return projection;
+    }
+
+    for (String field : fields.split(",")) {
+      String trimmedField = field.trim();
+      if (!LIST_FIELDS.contains(trimmedField)) {
+        return null;
+      }
+      projection.append(trimmedField, 1);
+    }
+    return projection;
+  }
+
+  /** A date query parameter is valid if it is not set, or is in the form yyyy-MM-dd. */
+  private static boolean isValidDate(String date) {
+    return null == date || date.matches("\\d{4}-\\d{2}-\\d{2}");
+  }
+
+  /**
+   * Write each occasion as it is read from the cursor, rather than building the whole list first.
+   *
+   * @param cursor The occasions to write. It is closed once they have been written.
+   * @return The response entity.
+   */
+  private static StreamingOutput streamOccasions(final DBCursor cursor) {
+    return output -> {
+      try (DBCursor occasions = cursor) {
+        JsonGenerator generator = Json.createGenerator(output);
+        generator.writeStartArray();
+        while (occasions.hasNext()) {
+          generator.write(OccasionDecoder.toOccasion(occasions.next()).toJson());
+        }
+        generator.writeEnd();
+        generator.flush();
+      }
+    };
+  }
+
   @PUT
   @Path("{id}")
   @Consumes(MediaType.APPLICATION_JSON)
@@ -334,13 +481,29 @@ public class OccasionResource {
 
       // Reschedule occasion with the orchestrator.  Use the updated object from
       // mongo because it will contain all fields that the orchestator may need.
-      try {
-        orchestrator.cancelOccasion(id);
-        orchestrator.scheduleOccasion(new Occasion(updatedObject));
-      } catch (ParseException e) {
-        e.printStackTrace();
-        response =
-            Response.status(400).entity("Invalid date given. Format must be YYYY-MM-DD").build();
+      // If the date did not change, the occasion keeps its place in the schedule.
+      if (null == updatedObject) {
+        response = Response.status(400).entity("no occasion found for given id").build();
+      } else {
+        try {
+          // The date or the group may have changed, and with them the time to notify.
+          Occasion occasion = new Occasion(updatedObject);
+          long notifyAt = orchestrator.computeNotifyAt(occasion);
+          if (!Long.valueOf(notifyAt).equals(occasion.getNotifyAt())) {
+            occasion.setNotifyAt(notifyAt);
+            getCollection()
+                .update(
+                    query,
+                    new BasicDBObject(
+                        "$set", new BasicDBObject(Occasion.OCCASION_NOTIFY_AT_KEY, notifyAt)));
+          }
+          orchestrator.scheduleOccasion(occasion);
+        } catch (ParseException e) {
+          e.printStackTrace();
+          orchestrator.cancelOccasion(id);
+          response =
+              Response.status(400).entity("Invalid date given. Format must be YYYY-MM-DD").build();
+        }
       }
     }
 
@@ -348,6 +511,256 @@ public class OccasionResource {
     return response;
   }
 
+  /**
+   * Add a user's contribution to an occasion. The contribution is pushed onto the stored occasion,
+   * and the stored total raised by its amount, in one write, so contributors that add at the same
+   * time don't overwrite each other. A user can only contribute once; their amount is changed with
+   * PUT.
+   *
+   * @param id The occasion ID.
+   * @param json The contribution, for example {"userId": "0001", "amount": 20}.
+   */
+  @POST
+  @Path("{id}/contributions")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public Response addContribution(@PathParam("id") String id, JsonObject json) {
+    String method = "addContribution";
+    logger.entering(clazz, method, new Object[] {id, json});
+
+    // Validate the JWT.  At this point, anyone can contribute to an occasion
+    // if they have a valid JWT.
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      logger.exiting(clazz, method, Status.UNAUTHORIZED);
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    Response response;
+    if (!ObjectId.isValid(id)) {
+      response = Response.status(400).entity("invalid occasion id").build();
+    } else if (null == json
+        || json.getString(Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY, "").isEmpty()
+        || null == json.getJsonNumber(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY)) {
+      response = Response.status(400).entity("contribution needs a userId and an amount").build();
+    } else {
+      ObjectId occasionId = new ObjectId(id);
+      Contribution contribution = new Contribution(json);
+      backfillContributionTotal(occasionId);
+      DBObject updatedObject = pushContribution(occasionId, contribution);
+      if (null != updatedObject) {
+        orchestrator.refreshOccasion(new Occasion(updatedObject));
+        response = Response.ok().build();
+      } else if (occasionExists(occasionId)) {
+        response = Response.status(400).entity("user has already contributed").build();
+      } else {
+        response = Response.status(400).entity("no occasion found for given id").build();
+      }
+    }
+
+    logger.exiting(clazz, method, response);
+    return response;
+  }
+
+  /**
+   * Set the amount a user contributes to an occasion, adding their contribution if they have not
+   * contributed yet. The amount is changed in place, and the stored total by the difference, in one
+   * write that only applies if the amount is still the one that was read. If another request
+   * changes the amount in between, the update is tried again.
+   *
+   * @param id The occasion ID.
+   * @param userId The user ID.
+   * @param json The new amount, for example {"amount": 25}.
+   */
+  @PUT
+  @Path("{id}/contributions/{userId}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public Response updateContribution(
+      @PathParam("id") String id, @PathParam("userId") String userId, JsonObject json) {
+    String method = "updateContribution";
+    logger.entering(clazz, method, new Object[] {id, userId, json});
+
+    // Validate the JWT.  At this point, anyone can contribute to an occasion
+    // if they have a valid JWT.
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      logger.exiting(clazz, method, Status.UNAUTHORIZED);
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    if (!ObjectId.isValid(id)) {
+      Response response = Response.status(400).entity("invalid occasion id").build();
+      logger.exiting(clazz, method, response);
+      return response;
+    }
+    if (null == json || null == json.getJsonNumber(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY)) {
+      Response response = Response.status(400).entity("contribution needs an amount").build();
+      logger.exiting(clazz, method, response);
+      return response;
+    }
+
+    ObjectId occasionId = new ObjectId(id);
+    Contribution contribution =
+        new Contribution(
+            userId, json.getJsonNumber(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY).doubleValue());
+    BasicDBObject query = new BasicDBObject(Occasion.OCCASION_ID_KEY, occasionId);
+    BasicDBObject projection =
+        new BasicDBObject(
+            Occasion.OCCASION_CONTRIBUTIONS_KEY,
+            new BasicDBObject(
+                "$elemMatch",
+                new BasicDBObject(Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY, userId)));
+
+    backfillContributionTotal(occasionId);
+
+    Response response = null;
+    for (int attempt = 0; attempt < MAX_CONTRIBUTION_ATTEMPTS && null == response; attempt++) {
+      // Read only the user's contribution, to find out how much the total changes by.
+      DBObject current = getCollection().findOne(query, projection);
+      if (null == current) {
+        response = Response.status(400).entity("no occasion found for given id").build();
+        break;
+      }
+
+      BasicDBList matches = (BasicDBList) current.get(Occasion.OCCASION_CONTRIBUTIONS_KEY);
+      DBObject updatedObject;
+      if (null == matches || matches.isEmpty()) {
+        updatedObject = pushContribution(occasionId, contribution);
+      } else {
+        DBObject stored = (DBObject) matches.get(0);
+        long storedCents = new Contribution(stored).getCents();
+        if (storedCents == contribution.getCents()) {
+          response = Response.ok().build();
+          break;
+        }
+        updatedObject =
+            setContribution(
+                occasionId,
+                contribution,
+                stored.get(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY),
+                contribution.getCents() - storedCents);
+      }
+
+      if (null != updatedObject) {
+        orchestrator.refreshOccasion(new Occasion(updatedObject));
+        response = Response.ok().build();
+      }
+    }
+
+    if (null == response) {
+      response =
+          Response.status(Status.CONFLICT)
+              .type(MediaType.TEXT_PLAIN)
+              .entity("the contribution kept changing, try again")
+              .build();
+    }
+
+    logger.exiting(clazz, method, response);
+    return response;
+  }
+
+  /**
+   * Store the total of an occasion's contributions, if the occasion was stored before the total
+   * was. Otherwise $inc would start the total from zero. The total is only stored if the
+   * contributions are still the ones it was worked out from. Contributions are only added or
+   * changed once the total is stored, so they can't change in between unless another request stores
+   * the same total first.
+   */
+  private void backfillContributionTotal(ObjectId occasionId) {
+    BasicDBObject query =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, occasionId)
+            .append(
+                Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY,
+                new BasicDBObject("$exists", false));
+    DBObject stored =
+        getCollection().findOne(query, new BasicDBObject(Occasion.OCCASION_CONTRIBUTIONS_KEY, 1));
+    if (null == stored) {
+      return;
+    }
+
+    long totalCents = new Occasion(stored).getContributionTotalCents();
+    query.append(
+        Occasion.OCCASION_CONTRIBUTIONS_KEY, stored.get(Occasion.OCCASION_CONTRIBUTIONS_KEY));
+    getCollection()
+        .update(
+            query,
+            new BasicDBObject(
+                "$set",
+                new BasicDBObject(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, totalCents)));
+    logger.log(Level.FINE, "Stored the contribution total of occasion {0}", occasionId);
+  }
+
+  /**
+   * Push a contribution onto an occasion, and raise the total by its amount, unless the user has
+   * contributed already. The occasion must have a stored total.
+   *
+   * @return The updated occasion, or null if there is no such occasion or the user has contributed.
+   */
+  private DBObject pushContribution(ObjectId occasionId, Contribution contribution) {
+    BasicDBObject query =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, occasionId)
+            .append(
+                Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, new BasicDBObject("$exists", true))
+            .append(
+                Occasion.OCCASION_CONTRIBUTIONS_KEY
+                    + "."
+                    + Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY,
+                new BasicDBObject("$ne", contribution.getUserId()));
+    BasicDBObject update =
+        new BasicDBObject(
+                "$push",
+                new BasicDBObject(Occasion.OCCASION_CONTRIBUTIONS_KEY, contribution.toDbo()))
+            .append(
+                "$inc",
+                new BasicDBObject(
+                    Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, contribution.getCents()));
+    return getCollection().findAndModify(query, null, null, false, update, true, false);
+  }
+
+  /**
+   * Change the amount of a contribution in place, and the total by the difference, if the stored
+   * amount is still the one that was read. The occasion must have a stored total.
+   *
+   * @return The updated occasion, or null if the contribution has changed since it was read.
+   */
+  private DBObject setContribution(
+      ObjectId occasionId, Contribution contribution, Object storedAmount, long changeCents) {
+    BasicDBObject query =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, occasionId)
+            .append(
+                Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, new BasicDBObject("$exists", true))
+            .append(
+                Occasion.OCCASION_CONTRIBUTIONS_KEY,
+                new BasicDBObject(
+                    "$elemMatch",
+                    new BasicDBObject(
+                            Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY, contribution.getUserId())
+                        .append(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY, storedAmount)));
+    BasicDBObject update =
+        new BasicDBObject(
+                "$set",
+                new BasicDBObject(
+                    Occasion.OCCASION_CONTRIBUTIONS_KEY
+                        + ".$."
+                        + Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY,
+                    contribution.getAmount()))
+            .append(
+                "$inc",
+                new BasicDBObject(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY, changeCents));
+    return getCollection().findAndModify(query, null, null, false, update, true, false);
+  }
+
+  private boolean occasionExists(ObjectId occasionId) {
+    return 0 < getCollection().count(new BasicDBObject(Occasion.OCCASION_ID_KEY, occasionId));
+  }
+
   @DELETE
   @Path("{id}")
   @Consumes(MediaType.APPLICATION_JSON)
@@ -387,6 +800,45 @@ public class OccasionResource {
     return response;
   }
 
+  /**
+   * Drop a group or user from the orchestrator's lookup cache. The group and user services call
+   * this when a group or user changes, so that the next notification sees the change. Only this
+   * replica's cache is changed; other replicas see the change once their copy expires.
+   *
+   * @param type Either "groups" or "users".
+   * @param id The ID of the group or user.
+   */
+  @DELETE
+  @Path("/cache/{type}/{id}")
+  public Response invalidateCache(@PathParam("type") String type, @PathParam("id") String id) {
+    String method = "invalidateCache";
+    logger.entering(clazz, method, new Object[] {type, id});
+
+    try {
+      validateJWT();
+    } catch (JWTException jwte) {
+      logger.exiting(clazz, method, Status.UNAUTHORIZED);
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    Response response;
+    if (CACHE_TYPE_GROUPS.equals(type)) {
+      orchestrator.invalidateGroup(id);
+      response = Response.ok().build();
+    } else if (CACHE_TYPE_USERS.equals(type)) {
+      orchestrator.invalidateUser(id);
+      response = Response.ok().build();
+    } else {
+      response = Response.status(Status.NOT_FOUND).entity("unknown cache " + type).build();
+    }
+
+    logger.exiting(clazz, method, response);
+    return response;
+  }
+
   /**
    * Delete an occasion from the database
    *
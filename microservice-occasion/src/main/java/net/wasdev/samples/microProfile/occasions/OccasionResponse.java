@@ -10,7 +10,16 @@
 // ******************************************************************************
 package net.wasdev.samples.microProfile.occasions;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 public class OccasionResponse {
   public static final String NOTIFICATION_TYPE_LOG = "Notification request logged.";
@@ -18,6 +27,11 @@ public class OccasionResponse {
   public static final String NOTIFICATION_TYPE_ERROR =
       "Your occasion was processed but a notification request was not sent. The notification service is not available.";
 
+  // Batch notification keys
+  private static final String JSON_KEY_RESULTS = "results";
+  private static final String JSON_KEY_STATUS = "status";
+  private static final String JSON_KEY_ERROR = "error";
+
   private Response notificationResponse;
   private String notificationType;
   private Throwable notificationThrowable;
@@ -39,4 +53,45 @@ public class OccasionResponse {
   public Throwable getNotificationThrowable() {
     return notificationThrowable;
   }
+
+  /**
+   * Map the response to a batch notification request back to the notifications in the batch.
+   *
+   * @param response The response from the notification service.
+   * @param batchSize The number of notifications in the batch.
+   * @param type The notification type of the notifications that were sent.
+   * @return One response for each notification, in the order they were sent.
+   * @throws IOException if the request as a whole failed.
+   */
+  public static List<OccasionResponse> fromBatchResponse(
+      Response response, int batchSize, String type) throws IOException {
+    if (response.getStatus() != Status.OK.getStatusCode()) {
+      throw new IOException(
+          "Batch notification request failed with status " + response.getStatus());
+    }
+
+    JsonArray results;
+    try (JsonReader reader =
+        Json.createReader(new StringReader(response.readEntity(String.class)))) {
+      results = reader.readObject().getJsonArray(JSON_KEY_RESULTS);
+    }
+    if (results == null || results.size() != batchSize) {
+      throw new IOException("Batch notification response does not have " + batchSize + " results");
+    }
+
+    List<OccasionResponse> responses = new ArrayList<OccasionResponse>(batchSize);
+    for (JsonObject result : results.getValuesAs(JsonObject.class)) {
+      int status = result.getInt(JSON_KEY_STATUS);
+      Response itemResponse = Response.status(status).build();
+      if (Status.Family.familyOf(status) == Status.Family.SUCCESSFUL) {
+        responses.add(new OccasionResponse(itemResponse, type, null));
+      } else {
+        String error =
+            result.getString(JSON_KEY_ERROR, "Notification failed with status " + status);
+        responses.add(
+            new OccasionResponse(itemResponse, NOTIFICATION_TYPE_ERROR, new IOException(error)));
+      }
+    }
+    return responses;
+  }
 }
@@ -0,0 +1,257 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Loads the occasions that are stored in the database into the orchestrator's schedule.
+ *
+ * <p>Only the occasions that are due within the next few days (the window) are loaded. A periodic
+ * refill task slides the window forward and loads the occasions that have moved into it, so the
+ * cost of loading does not grow with the total number of stored occasions. Occasions that are
+ * created or updated with a date past the end of the window are left for the refill to load.
+ *
+ * <p>The loader also reloads occasions whose claim has expired (see {@link OccasionClaims}), so
+ * that the occasions of a replica that stopped part way through are picked up by the others.
+ *
+ * <p>An occasion that is created, updated or moved on to its next date inside the loaded window is
+ * only scheduled by the replica that stored it, and has no claim until it is due. So that it is not
+ * lost if that replica stops, the loaded window is scanned again as often as claims run out, and
+ * any unclaimed occasion that is not in this replica's schedule is scheduled.
+ */
+@ApplicationScoped
+public class OccasionScheduleLoader {
+  private static final String clazz = OccasionScheduleLoader.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** Access to MongoDB. */
+  @Inject private MongoAccess mongo;
+
+  @Inject private Orchestrator orchestrator;
+
+  /** Finds occasions that another replica claimed but did not finish. */
+  @Inject private OccasionClaims occasionClaims;
+
+  /** The number of days, starting today, of occasions to keep in the schedule. */
+  @Inject
+  @ConfigProperty(name = "occasion.schedule.window.days", defaultValue = "2")
+  private int windowDays;
+
+  /** How often to slide the window forward and load the next occasions. */
+  @Inject
+  @ConfigProperty(name = "occasion.schedule.refill.hours", defaultValue = "12")
+  private int refillHours;
+
+  /** Set once the first load has been started. */
+  private final AtomicBoolean started = new AtomicBoolean(false);
+
+  /** Runs the periodic refill. */
+  private final ScheduledExecutorService refillExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "occasion-schedule-refill");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** The first date that has not been loaded yet (yyyy-MM-dd). Only used by the loading thread. */
+  private String loadedUntil = null;
+
+  /** The start of loadedUntil, in milliseconds since the epoch. Only used by the loading thread. */
+  private long loadedUntilMillis = 0;
+
+  /**
+   * Load the current window of occasions and start the periodic refill. Only the first call does
+   * anything, so this is cheap to call on every request.
+   *
+   * @param occasionResource The resource that the orchestrator uses to modify the occasion
+   *     database.
+   */
+  public void start(OccasionResource occasionResource) {
+    if (started.compareAndSet(false, true)) {
+      orchestrator.setOccasionResource(occasionResource);
+      refill();
+      refillExecutor.scheduleWithFixedDelay(
+          () -> refill(), refillHours, refillHours, TimeUnit.HOURS);
+      long leaseMillis = occasionClaims.getLeaseMillis();
+      refillExecutor.scheduleWithFixedDelay(
+          () -> {
+            reloadExpiredClaims();
+            reloadUnscheduled();
+          },
+          leaseMillis,
+          leaseMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refillExecutor.shutdownNow();
+  }
+
+  /** Slide the window forward and schedule the occasions that have moved into it. */
+  synchronized void refill() {
+    String method = "refill";
+    logger.entering(clazz, method, loadedUntil);
+
+    NotificationTime notificationTime = orchestrator.getNotificationTime();
+    LocalDate windowEndDate = notificationTime.today().plusDays(Math.max(windowDays, 1));
+    String windowEnd = windowEndDate.toString();
+    long windowEndMillis = notificationTime.getStartOfDayMillis(windowEndDate);
+
+    // Move the orchestrator's horizon first. An occasion that is created while we query will then
+    // either be scheduled by the orchestrator directly, or found by the query, or both.
+    orchestrator.setScheduleHorizon(windowEndMillis);
+
+    // The first load has no lower bound, so that past-due occasions run right away.
+    BasicDBObject notifyAtRange = new BasicDBObject("$lt", windowEndMillis);
+    BasicDBObject dateRange = new BasicDBObject("$lt", windowEnd);
+    if (loadedUntil != null) {
+      notifyAtRange.append("$gte", loadedUntilMillis);
+      dateRange.append("$gte", loadedUntil);
+    }
+
+    int loaded = 0;
+    try (DBCursor cursor =
+        getCollection()
+            .find(new BasicDBObject("$or", inRange(notifyAtRange, dateRange)))
+            .setDecoderFactory(OccasionDecoder.FACTORY)) {
+      while (cursor.hasNext()) {
+        Occasion occasion = OccasionDecoder.toOccasion(cursor.next());
+        try {
+          orchestrator.scheduleOccasion(occasion);
+          loaded++;
+        } catch (Throwable t) {
+          logger.log(Level.WARNING, "Could not schedule occasion " + occasion.getId(), t);
+        }
+      }
+      loadedUntil = windowEnd;
+      loadedUntilMillis = windowEndMillis;
+    } catch (Throwable t) {
+      // Leave loadedUntil alone so the next refill tries this range again.
+      logger.log(Level.WARNING, "Could not load occasions until " + windowEnd, t);
+    }
+
+    logger.exiting(clazz, method, loaded);
+  }
+
+  /**
+   * Schedule the occasions whose claim ran out, which happens when the replica that claimed them
+   * stopped before it finished. They are past due, so they run right away, and the first replica to
+   * claim them again notifies them.
+   */
+  void reloadExpiredClaims() {
+    try {
+      for (Occasion occasion : occasionClaims.findExpired()) {
+        orchestrator.scheduleOccasion(occasion);
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Could not reload occasions with expired claims", t);
+    }
+  }
+
+  /**
+   * Schedule the unclaimed occasions in the loaded window that are not in this replica's schedule.
+   * These are occasions that another replica created, updated or moved on to their next date after
+   * the window was loaded, and would be lost if that replica stopped before they were due. Only the
+   * IDs are read, and only the occasions that are missing are read in full.
+   */
+  synchronized void reloadUnscheduled() {
+    String method = "reloadUnscheduled";
+    logger.entering(clazz, method, loadedUntil);
+
+    if (loadedUntil == null) {
+      logger.exiting(clazz, method);
+      return;
+    }
+
+    BasicDBObject query =
+        new BasicDBObject(
+                "$or",
+                inRange(
+                    new BasicDBObject("$lt", loadedUntilMillis),
+                    new BasicDBObject("$lt", loadedUntil)))
+            .append(OccasionClaims.OCCASION_LEASE_UNTIL_KEY, new BasicDBObject("$exists", false));
+
+    int loaded = 0;
+    try {
+      BasicDBList missing = new BasicDBList();
+      try (DBCursor cursor =
+          getCollection().find(query, new BasicDBObject(Occasion.OCCASION_ID_KEY, 1))) {
+        while (cursor.hasNext()) {
+          Object id = cursor.next().get(Occasion.OCCASION_ID_KEY);
+          if (!orchestrator.isScheduled(id.toString())) {
+            missing.add(id);
+          }
+        }
+      }
+
+      if (!missing.isEmpty()) {
+        List<Occasion> occasions = new ArrayList<Occasion>(missing.size());
+        try (DBCursor cursor =
+            getCollection()
+                .find(
+                    new BasicDBObject(Occasion.OCCASION_ID_KEY, new BasicDBObject("$in", missing)))
+                .setDecoderFactory(OccasionDecoder.FACTORY)) {
+          while (cursor.hasNext()) {
+            occasions.add(OccasionDecoder.toOccasion(cursor.next()));
+          }
+        }
+        for (Occasion occasion : occasions) {
+          logger.log(Level.FINE, "Occasion {0} was not scheduled here", occasion.getId());
+          orchestrator.scheduleOccasion(occasion);
+          loaded++;
+        }
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Could not reload unscheduled occasions", t);
+    }
+
+    logger.exiting(clazz, method, loaded);
+  }
+
+  /**
+   * Match the occasions in a range. Occasions are found by the time they are notified. Occasions
+   * that were stored before that time was, have none, and are found by their date instead.
+   */
+  private static BasicDBList inRange(DBObject notifyAtRange, DBObject dateRange) {
+    BasicDBList inRange = new BasicDBList();
+    inRange.add(new BasicDBObject(Occasion.OCCASION_NOTIFY_AT_KEY, notifyAtRange));
+    inRange.add(
+        new BasicDBObject(Occasion.OCCASION_NOTIFY_AT_KEY, null)
+            .append(Occasion.OCCASION_DATE_KEY, dateRange));
+    return inRange;
+  }
+
+  private DBCollection getCollection() {
+    // The indexes on the notification time and date, and on the claim, are created by MongoAccess.
+    return mongo.getMongoDB().getCollection("occasions");
+  }
+}
@@ -0,0 +1,266 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules occasion notifications and runs them once they are due.
+ *
+ * <p>Occasions are kept in a timing wheel of buckets, one bucket for each distinct due time. Since
+ * every occasion is due at the same time of day, all of the occasions on a given date share a
+ * bucket, and the timer holds a single entry for the whole bucket rather than one per occasion.
+ * Adding or cancelling an occasion is a constant time hash map operation.
+ *
+ * <p>When a bucket is due, each of its occasions is handed to one of a fixed number of worker
+ * shards, chosen by the occasion ID, so that occasions that fall due at the same time are notified
+ * in parallel. Each shard runs one notification at a time, which bounds the number of concurrent
+ * calls made to the other services to the number of shards. Any due occasions that a shard has not
+ * started yet wait in that shard's queue.
+ */
+public class OccasionScheduler {
+  private static final String clazz = OccasionScheduler.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** Waits for buckets to become due, and hands their occasions to the shards. */
+  private final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("occasion-timer"));
+
+  /** The workers that run due occasions. */
+  private final ThreadPoolExecutor[] shards;
+
+  /** The buckets waiting to become due, keyed by due time. Guarded by this. */
+  private final Map<Long, Bucket> buckets = new HashMap<Long, Bucket>();
+
+  /** The bucket that each pending occasion is in, keyed by occasion ID. Guarded by this. */
+  private final Map<String, Bucket> occasionBuckets = new HashMap<String, Bucket>();
+
+  /**
+   * The number of times an occasion was scheduled for the time it was already due, so its task was
+   * swapped in place instead of being moved. Guarded by this.
+   */
+  private long unchangedReschedules = 0;
+
+  public OccasionScheduler(int shardCount) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("The scheduler needs at least one shard: " + shardCount);
+    }
+
+    shards = new ThreadPoolExecutor[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new NamedThreadFactory("occasion-shard-" + i));
+    }
+  }
+
+  /**
+   * Schedule a task for an occasion. Any task that is already scheduled for the occasion is
+   * replaced. If the occasion is already due at the same time, only the task is swapped, and its
+   * bucket and timer are left as they are.
+   *
+   * @param occasionId The ID of the occasion.
+   * @param dueMillis When the task is due, in milliseconds since the epoch. A time in the past runs
+   *     the task right away.
+   * @param task The work to do when the occasion is due.
+   */
+  public synchronized void schedule(String occasionId, long dueMillis, Runnable task) {
+    Bucket current = occasionBuckets.get(occasionId);
+    if (current != null && current.dueMillis == dueMillis) {
+      current.tasks.put(occasionId, task);
+      unchangedReschedules++;
+      logger.log(
+          Level.FINE, "Occasion {0} is still due at {1}", new Object[] {occasionId, dueMillis});
+      return;
+    }
+
+    cancel(occasionId);
+
+    Bucket bucket = buckets.get(dueMillis);
+    if (bucket == null) {
+      bucket = new Bucket(dueMillis);
+      buckets.put(dueMillis, bucket);
+      long delay = Math.max(dueMillis - System.currentTimeMillis(), 0);
+      bucket.future = timer.schedule(bucket, delay, TimeUnit.MILLISECONDS);
+    }
+    bucket.tasks.put(occasionId, task);
+    occasionBuckets.put(occasionId, bucket);
+
+    logger.log(
+        Level.FINE,
+        "Scheduled occasion {0} in bucket {1} on shard {2}",
+        new Object[] {occasionId, dueMillis, shardFor(occasionId)});
+  }
+
+  /**
+   * Cancel the task for an occasion, if it has not been handed to a shard yet.
+   *
+   * @param occasionId The ID of the occasion.
+   * @return true if a pending task was cancelled.
+   */
+  public synchronized boolean cancel(String occasionId) {
+    Bucket bucket = occasionBuckets.remove(occasionId);
+    if (bucket == null) {
+      return false;
+    }
+
+    bucket.tasks.remove(occasionId);
+    if (bucket.tasks.isEmpty()) {
+      // Nothing else is due at this time, so stop the timer for it.
+      buckets.remove(bucket.dueMillis);
+      bucket.future.cancel(false);
+    }
+    return true;
+  }
+
+  /**
+   * Replace the task of a pending occasion, keeping the time it is due.
+   *
+   * @param occasionId The ID of the occasion.
+   * @param task The work to do when the occasion is due.
+   * @return true if the occasion was pending. If it was not, nothing is scheduled.
+   */
+  public synchronized boolean replace(String occasionId, Runnable task) {
+    Bucket bucket = occasionBuckets.get(occasionId);
+    if (bucket == null) {
+      return false;
+    }
+
+    bucket.tasks.put(occasionId, task);
+    return true;
+  }
+
+  /** True if the occasion is waiting to become due. */
+  public synchronized boolean isScheduled(String occasionId) {
+    return occasionBuckets.containsKey(occasionId);
+  }
+
+  /** The number of occasions that are waiting to become due. */
+  public synchronized int getPendingCount() {
+    return occasionBuckets.size();
+  }
+
+  /** The number of times an occasion was scheduled again without its due time changing. */
+  public synchronized long getUnchangedRescheduleCount() {
+    return unchangedReschedules;
+  }
+
+  /** The number of distinct due times that occasions are waiting for. */
+  public synchronized int getBucketCount() {
+    return buckets.size();
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /** The number of due occasions waiting for a shard to start them. */
+  public int getQueueDepth(int shard) {
+    return shards[shard].getQueue().size();
+  }
+
+  /** The number of occasions a shard is notifying right now (zero or one). */
+  public int getActiveCount(int shard) {
+    return shards[shard].getActiveCount();
+  }
+
+  /** The number of occasions a shard has finished notifying. */
+  public long getCompletedCount(int shard) {
+    return shards[shard].getCompletedTaskCount();
+  }
+
+  /** Stop the timer and the shards. Occasions that are still pending are not run. */
+  public void shutdown() {
+    timer.shutdownNow();
+    for (ThreadPoolExecutor shard : shards) {
+      shard.shutdown();
+    }
+  }
+
+  int shardFor(String occasionId) {
+    return Math.floorMod(occasionId.hashCode(), shards.length);
+  }
+
+  /** Take a due bucket out of the wheel, and hand its occasions to the shards. */
+  private void fire(Bucket bucket) {
+    Map<String, Runnable> dueTasks;
+    synchronized (this) {
+      // The bucket may have been emptied and cancelled while the timer was firing.
+      if (buckets.get(bucket.dueMillis) != bucket) {
+        return;
+      }
+      buckets.remove(bucket.dueMillis);
+      for (String occasionId : bucket.tasks.keySet()) {
+        occasionBuckets.remove(occasionId);
+      }
+      dueTasks = bucket.tasks;
+    }
+
+    logger.log(
+        Level.FINE,
+        "Bucket {0} is due with {1} occasions",
+        new Object[] {bucket.dueMillis, dueTasks.size()});
+    for (Map.Entry<String, Runnable> dueTask : dueTasks.entrySet()) {
+      shards[shardFor(dueTask.getKey())].execute(dueTask.getValue());
+    }
+  }
+
+  /** All of the occasions that are due at one time. */
+  private class Bucket implements Runnable {
+    private final long dueMillis;
+    private final Map<String, Runnable> tasks = new HashMap<String, Runnable>();
+    private Future<?> future;
+
+    Bucket(long dueMillis) {
+      this.dueMillis = dueMillis;
+    }
+
+    @Override
+    public void run() {
+      fire(this);
+    }
+  }
+
+  /** Names the scheduler threads so they can be picked out in a thread dump. */
+  static class NamedThreadFactory implements ThreadFactory {
+    private final ThreadFactory delegate = Executors.defaultThreadFactory();
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = delegate.newThread(runnable);
+      thread.setName(name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
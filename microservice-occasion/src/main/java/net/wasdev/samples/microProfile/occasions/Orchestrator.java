@@ -12,39 +12,43 @@ package net.wasdev.samples.microProfile.occasions;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 import javax.json.stream.JsonParsingException;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.HttpHeaders;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 
 @ApplicationScoped
 public class Orchestrator {
-  private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  /** The number of scheduler shards used when none is configured. */
+  private static final int DEFAULT_SCHEDULER_SHARDS = 4;
+
+  /** How long to wait for a group or user lookup when none is configured. */
+  private static final long DEFAULT_LOOKUP_TIMEOUT_MILLIS = 15000;
 
   private static final String clazz = Orchestrator.class.getName();
   private static final Logger logger = Logger.getLogger(clazz);
@@ -71,7 +75,29 @@ public class Orchestrator {
   private static String NOTIFICATION_SERVICE_URL;
   private static String NOTIFICATION_1_1_SERVICE_URL;
 
-  Map<String, Future<?>> scheduledOccasions = new HashMap<String, Future<?>>();
+  /** Runs occasion notifications when they are due. Created on first use. */
+  private OccasionScheduler scheduler = null;
+
+  /** Collects due notifications into batches. Created on first use, if batching is on. */
+  private NotificationBatcher notificationBatcher = null;
+
+  /** The groups and users that have been looked up recently. Created on first use. */
+  private LookupCache groupCache = null;
+
+  private LookupCache userCache = null;
+
+  /** Makes the calls to the group and user services. Created on first use. */
+  private ExecutorService lookupExecutor = null;
+
+  /** Works out when occasions are notified. Created on first use. */
+  private NotificationTime notificationTime = null;
+
+  /**
+   * Occasions notified at or after this time (milliseconds since the epoch) are not scheduled yet.
+   * They are loaded later by the {@link OccasionScheduleLoader}. Long.MAX_VALUE schedules every
+   * occasion.
+   */
+  private volatile long scheduleHorizon = Long.MAX_VALUE;
 
   /** Local reference to the occasion resource that we can use to modify the occasion database. */
   private OccasionResource occasionResource = null;
@@ -80,6 +106,41 @@ public class Orchestrator {
 
   @Inject private JwtBuilder jwtBuilder;
 
+  /** The counters of the JWT cache that decorates the JWT builder. */
+  @Inject private JwtCacheState jwtCacheState;
+
+  /**
+   * The most notifications to send to the notification service in one request. A batch size of one
+   * sends each notification on its own.
+   */
+  @Inject
+  @ConfigProperty(name = "orchestrator.notification.batch.size", defaultValue = "50")
+  private int notificationBatchSize;
+
+  /** How long to wait for a batch of notifications to fill up before sending it anyway. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.notification.batch.linger.ms", defaultValue = "200")
+  private long notificationBatchLingerMillis;
+
+  /** The most groups, and the most users, to keep in the lookup caches. Zero turns them off. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.lookup.cache.size", defaultValue = "10000")
+  private int lookupCacheSize;
+
+  /** How long a looked up group or user is used for before it is looked up again. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.lookup.cache.ttl.seconds", defaultValue = "300")
+  private long lookupCacheTtlSeconds;
+
+  /** The shared client for calls to the other services. */
+  @Inject private ServiceClient serviceClient;
+
+  /** Claims due occasions, so that only one replica of this service notifies each one. */
+  @Inject private OccasionClaims occasionClaims;
+
+  /** Moves occasions that recur on to their next date, once they have been notified. */
+  @Inject private OccasionRecurrence occasionRecurrence;
+
   @Inject
   @ConfigProperty(name = "user.service.hostname")
   private String userServiceHostname;
@@ -112,6 +173,222 @@ public class Orchestrator {
   @ConfigProperty(name = "notification_1_1.service.port")
   private String notification_1_1ServicePort;
 
+  /**
+   * The number of scheduler shards. This is the number of occasions that can be notified at the
+   * same time.
+   */
+  @Inject
+  @ConfigProperty(name = "occasion.scheduler.shards", defaultValue = "4")
+  private int schedulerShards;
+
+  /** The time of day that occasions are notified at, for example 08:00. */
+  @Inject
+  @ConfigProperty(name = "occasion.notification.time", defaultValue = "08:00")
+  private String notificationTimeOfDay;
+
+  /** The time zone that occasions are notified in. Empty for the time zone of the server. */
+  @Inject
+  @ConfigProperty(name = "occasion.notification.zone", defaultValue = "")
+  private String notificationZone;
+
+  /**
+   * The time zones of groups that are notified in a zone of their own, for example
+   * "0001=Europe/Paris,0002=Asia/Tokyo".
+   */
+  @Inject
+  @ConfigProperty(name = "occasion.notification.group.zones", defaultValue = "")
+  private String notificationGroupZones;
+
+  /** How long to wait for the group and user lookups when notifying an occasion. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.lookup.timeout.ms", defaultValue = "15000")
+  private long lookupTimeoutMillis;
+
+  /** The application metric registry, where the scheduler and client pool metrics are published. */
+  @Inject private MetricRegistry metricRegistry;
+
+  /** Publish the scheduler, lookup cache, JWT cache and service client metrics. */
+  @PostConstruct
+  public void registerMetrics() {
+    final OccasionScheduler scheduler = getScheduler();
+    metricRegistry.register(
+        "occasion.scheduler.pending", (Gauge<Integer>) () -> scheduler.getPendingCount());
+    metricRegistry.register(
+        "occasion.scheduler.buckets", (Gauge<Integer>) () -> scheduler.getBucketCount());
+    metricRegistry.register(
+        "occasion.scheduler.reschedulesAvoided",
+        (Gauge<Long>) () -> scheduler.getUnchangedRescheduleCount());
+    for (int i = 0; i < scheduler.getShardCount(); i++) {
+      final int shard = i;
+      metricRegistry.register(
+          "occasion.scheduler.shard." + shard + ".queueDepth",
+          (Gauge<Integer>) () -> scheduler.getQueueDepth(shard));
+      metricRegistry.register(
+          "occasion.scheduler.shard." + shard + ".active",
+          (Gauge<Integer>) () -> scheduler.getActiveCount(shard));
+      metricRegistry.register(
+          "occasion.scheduler.shard." + shard + ".completed",
+          (Gauge<Long>) () -> scheduler.getCompletedCount(shard));
+    }
+
+    final NotificationBatcher batcher = getNotificationBatcher();
+    if (batcher != null) {
+      metricRegistry.register(
+          "orchestrator.notification.batch.queueDepth",
+          (Gauge<Integer>) () -> batcher.getQueueDepth());
+      metricRegistry.register(
+          "orchestrator.notification.batch.sent", (Gauge<Long>) () -> batcher.getBatchCount());
+    }
+
+    registerCacheMetrics(getGroupCache());
+    registerCacheMetrics(getUserCache());
+
+    final JwtCacheState jwtCache = jwtCacheState;
+    metricRegistry.register(
+        "orchestrator.jwt.cache.hits", (Gauge<Long>) () -> jwtCache.getHitCount());
+    metricRegistry.register(
+        "orchestrator.jwt.cache.misses", (Gauge<Long>) () -> jwtCache.getMissCount());
+
+    final ServiceClient client = getServiceClient();
+    metricRegistry.register(
+        "orchestrator.client.pool.leased", (Gauge<Integer>) () -> client.getLeasedCount());
+    metricRegistry.register(
+        "orchestrator.client.pool.idle", (Gauge<Integer>) () -> client.getIdleCount());
+    metricRegistry.register(
+        "orchestrator.client.pool.pending", (Gauge<Integer>) () -> client.getPendingCount());
+  }
+
+  private void registerCacheMetrics(final LookupCache cache) {
+    if (cache != null) {
+      String prefix = "orchestrator.lookup.cache." + cache.getName() + ".";
+      metricRegistry.register(prefix + "size", (Gauge<Integer>) () -> cache.getSize());
+      metricRegistry.register(prefix + "hitRatio", (Gauge<Double>) () -> cache.getHitRatio());
+      metricRegistry.register(prefix + "hits", (Gauge<Long>) () -> cache.getHitCount());
+      metricRegistry.register(prefix + "misses", (Gauge<Long>) () -> cache.getMissCount());
+      metricRegistry.register(prefix + "evictions", (Gauge<Long>) () -> cache.getEvictionCount());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    if (lookupExecutor != null) {
+      lookupExecutor.shutdownNow();
+    }
+    if (notificationBatcher != null) {
+      notificationBatcher.shutdown();
+    }
+  }
+
+  /**
+   * The lookup executor makes the group and user calls for a notification at the same time. Each
+   * scheduler shard notifies one occasion at a time, and each notification makes two lookups.
+   */
+  synchronized ExecutorService getLookupExecutor() {
+    if (lookupExecutor == null) {
+      lookupExecutor =
+          Executors.newFixedThreadPool(
+              2 * getScheduler().getShardCount(),
+              new OccasionScheduler.NamedThreadFactory("occasion-lookup"));
+    }
+    return lookupExecutor;
+  }
+
+  synchronized NotificationBatcher getNotificationBatcher() {
+    if (notificationBatcher == null && notificationBatchSize > 1) {
+      notificationBatcher =
+          new NotificationBatcher(
+              notificationBatchSize,
+              notificationBatchLingerMillis,
+              notifications -> sendNotifications(notifications));
+    }
+    return notificationBatcher;
+  }
+
+  synchronized LookupCache getGroupCache() {
+    if (groupCache == null && lookupCacheSize > 0) {
+      groupCache =
+          new LookupCache(
+              "group", lookupCacheSize, TimeUnit.SECONDS.toMillis(lookupCacheTtlSeconds));
+    }
+    return groupCache;
+  }
+
+  synchronized LookupCache getUserCache() {
+    if (userCache == null && lookupCacheSize > 0) {
+      userCache =
+          new LookupCache(
+              "user", lookupCacheSize, TimeUnit.SECONDS.toMillis(lookupCacheTtlSeconds));
+    }
+    return userCache;
+  }
+
+  /**
+   * Drop a group from the lookup cache, because it has changed.
+   *
+   * @param groupId The ID of the group.
+   */
+  public void invalidateGroup(String groupId) {
+    LookupCache cache = getGroupCache();
+    if (cache != null) {
+      cache.invalidate(groupId);
+    }
+  }
+
+  /**
+   * Drop a user from the lookup cache, because it has changed.
+   *
+   * @param userId The ID of the user.
+   */
+  public void invalidateUser(String userId) {
+    LookupCache cache = getUserCache();
+    if (cache != null) {
+      cache.invalidate(userId);
+    }
+  }
+
+  synchronized ServiceClient getServiceClient() {
+    if (serviceClient == null) {
+      serviceClient = new ServiceClient();
+    }
+    return serviceClient;
+  }
+
+  synchronized NotificationTime getNotificationTime() {
+    if (notificationTime == null) {
+      notificationTime =
+          NotificationTime.parse(notificationTimeOfDay, notificationZone, notificationGroupZones);
+    }
+    return notificationTime;
+  }
+
+  /**
+   * Work out when an occasion is notified, from its date and group.
+   *
+   * @param occasion The occasion.
+   * @return The time to notify the occasion, in milliseconds since the epoch.
+   * @throws ParseException If the date of the occasion is not yyyy-MM-dd.
+   */
+  public long computeNotifyAt(Occasion occasion) throws ParseException {
+    try {
+      return getNotificationTime().getNotifyAtMillis(occasion.getDate(), occasion.getGroupId());
+    } catch (DateTimeParseException dtpe) {
+      ParseException pe = new ParseException(dtpe.getMessage(), dtpe.getErrorIndex());
+      pe.initCause(dtpe);
+      throw pe;
+    }
+  }
+
+  synchronized OccasionScheduler getScheduler() {
+    if (scheduler == null) {
+      scheduler =
+          new OccasionScheduler(schedulerShards > 0 ? schedulerShards : DEFAULT_SCHEDULER_SHARDS);
+    }
+    return scheduler;
+  }
+
   /* following for jmock unit tests */
   public void setNotificationRetryBean(NotificationRetryBean notificationRetryBean) {
     this.notificationRetryBean = notificationRetryBean;
@@ -122,45 +399,85 @@ public class Orchestrator {
     this.jwtBuilder = builder;
   }
 
+  /**
+   * Schedule an occasion to be notified, replacing any earlier schedule for it. An occasion that is
+   * still due at the same time keeps its place in the scheduler, and only gets the new copy of the
+   * occasion.
+   *
+   * @param occasion The occasion, as it is stored.
+   * @throws ParseException If the date of the occasion is not yyyy-MM-dd.
+   */
   public void scheduleOccasion(Occasion occasion) throws ParseException {
     final String method = "scheduleOccasion";
     logger.entering(clazz, method, occasion);
 
-    final Runnable notify =
-        new Runnable() {
+    // Use the time that was worked out when the occasion was stored, if there is one.
+    Long storedNotifyAt = occasion.getNotifyAt();
+    long notifyAt = (storedNotifyAt != null) ? storedNotifyAt : computeNotifyAt(occasion);
+
+    // Leave occasions that are past the horizon for the loader to pick up later. An update may
+    // have moved the occasion past the horizon, so drop any earlier schedule.
+    if (notifyAt >= scheduleHorizon) {
+      getScheduler().cancel(occasion.getId().toString());
+      logger.log(Level.FINE, "Occasion {0} is past the schedule horizon", occasion.getId());
+      logger.exiting(clazz, method);
+      return;
+    }
 
-          @Override
-          public void run() {
-            runEventNotification(occasion);
-          }
-        };
+    // Schedule the occasion. This replaces any earlier schedule for the same occasion, or only its
+    // task if the time has not changed.
+    String idString = occasion.getId().toString();
+    getScheduler().schedule(idString, notifyAt, notifyTask(occasion));
+
+    logger.log(Level.FINE, "Scheduled occasion ID {0}", idString);
 
-    SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    logger.exiting(clazz, method);
+  }
 
-    // Set our occasion trigger time to 8AM
-    Date desiredDate = simpleDateFormat.parse(occasion.getDate() + " 08:00:00");
-    Date now = new Date();
-    long delay = desiredDate.getTime() - now.getTime();
+  /**
+   * Give the pending notification of an occasion the latest copy of the occasion, such as after its
+   * contributions change. The notification stays due at the same time. An occasion that is not
+   * pending is left unscheduled.
+   *
+   * @param occasion The occasion, as it is now stored.
+   */
+  public void refreshOccasion(Occasion occasion) {
+    final String method = "refreshOccasion";
+    logger.entering(clazz, method, occasion);
+    boolean refreshed = getScheduler().replace(occasion.getId().toString(), notifyTask(occasion));
+    logger.exiting(clazz, method, refreshed);
+  }
 
-    // Schedule the occasion and save the returned Future
-    // TODO: Serialize put into scheduledOccasions to cope with running immediately.
-    Future<?> scheduledOccasion =
-        executor.schedule(notify, Math.max(delay, 0), TimeUnit.MILLISECONDS);
-    String idString = occasion.getId().toString();
-    scheduledOccasions.put(idString, scheduledOccasion);
+  private Runnable notifyTask(final Occasion occasion) {
+    return new Runnable() {
 
-    logger.log(Level.FINE, "Stored future for occasion ID", idString);
+      @Override
+      public void run() {
+        runEventNotification(occasion);
+      }
+    };
+  }
 
-    logger.exiting(clazz, method);
+  /**
+   * Set the date that scheduling stops at.
+   *
+   * @param scheduleHorizon The first time (milliseconds since the epoch) that is not scheduled.
+   */
+  public void setScheduleHorizon(long scheduleHorizon) {
+    this.scheduleHorizon = scheduleHorizon;
+  }
+
+  /** True if the occasion is waiting in this replica's schedule to be notified. */
+  public boolean isScheduled(String occasionId) {
+    return getScheduler().isScheduled(occasionId);
   }
 
   public void cancelOccasion(String occasionId) {
     final String method = "cancelOccasion";
     logger.entering(clazz, method, occasionId);
-    Future<?> scheduledOccasion = scheduledOccasions.remove(occasionId);
-    logger.log(Level.FINEST, "Retrieved future", scheduledOccasion);
-    scheduledOccasion.cancel(false);
-    logger.exiting(clazz, method);
+    // The occasion may have already run, in which case there is nothing to cancel.
+    boolean cancelled = getScheduler().cancel(occasionId);
+    logger.exiting(clazz, method, cancelled);
   }
 
   /**
@@ -170,7 +487,41 @@ public class Orchestrator {
    * @param payload The JSON payload
    */
   public void runEventNotification(Occasion occasion) {
-    notify(occasion);
+    // Other replicas of this service have the same occasion scheduled. Only the replica that
+    // wins the claim on the occasion notifies it.
+    if (occasionClaims != null && !occasionClaims.claim(occasion)) {
+      logger.log(Level.FINE, "Occasion {0} was claimed elsewhere", occasion.getId());
+      return;
+    }
+
+    NotificationBatcher batcher = getNotificationBatcher();
+    if (batcher == null) {
+      notify(occasion);
+      return;
+    }
+
+    // Hand the notification to the batcher, and finish the occasion once its batch is sent. This
+    // frees the scheduler shard to prepare the next due occasion in the meantime.
+    String jwtTokenString = jwtBuilder.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    Notification notification = createNotification(occasion, jwtTokenString);
+    batcher
+        .submit(notification)
+        .whenComplete(
+            (occasionResponse, t) -> {
+              if (t != null) {
+                // The occasion keeps its claim, and is tried again when the claim runs out.
+                logger.log(
+                    Level.WARNING,
+                    "Notification for occasion " + occasion.getId() + " was not sent",
+                    t);
+              } else {
+                logger.log(
+                    Level.FINE,
+                    "Occasion {0}: {1}",
+                    new Object[] {occasion.getId(), occasionResponse.getNotificationType()});
+                finishOccasion(occasion);
+              }
+            });
   }
 
   private OccasionResponse notify(Occasion occasion) {
@@ -180,45 +531,78 @@ public class Orchestrator {
     // TODO: Move this to the authentication service and secure the flow with certificate auth.
     String jwtTokenString = jwtBuilder.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
 
-    // Call group service to get group name
-    Response groupResponse = null;
+    Notification notification = createNotification(occasion, jwtTokenString);
+
     try {
-      groupResponse =
-          makeConnection(
-              "GET", GROUP_SERVICE_URL + "/" + occasion.getGroupId(), null, jwtTokenString);
-    } catch (IOException e) {
-      e.printStackTrace();
+      occasionResponse =
+          notificationRetryBean.makeNotificationConnection(
+              notification.getMessage(),
+              this,
+              jwtTokenString,
+              NOTIFICATION_1_1_SERVICE_URL,
+              notification.getTwitterHandle(),
+              NOTIFICATION_SERVICE_URL);
+    } catch (Throwable t) {
+      t.printStackTrace();
+      occasionResponse = new OccasionResponse(null, OccasionResponse.NOTIFICATION_TYPE_ERROR, t);
     }
 
-    JsonObject groupResponseJson = stringToJsonObj(groupResponse.readEntity(String.class));
-    groupResponse.close();
-
-    String groupName = groupResponseJson.getString(JSON_KEY_GROUP_NAME);
+    finishOccasion(occasion);
+    return occasionResponse;
+  }
 
-    // Call user service to get recipient information
-    Response userResponse = null;
+  /**
+   * Send a batch of notifications to the notification service.
+   *
+   * @return One response for each notification, in the same order.
+   */
+  List<OccasionResponse> sendNotifications(List<Notification> notifications) {
+    String jwtTokenString = jwtBuilder.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
     try {
-      userResponse =
-          makeConnection(
-              "GET", USER_SERVICE_URL + "/" + occasion.getRecipientId(), null, jwtTokenString);
-    } catch (IOException e) {
-      e.printStackTrace();
+      return notificationRetryBean.makeBatchNotificationConnection(
+          notifications,
+          this,
+          jwtTokenString,
+          NOTIFICATION_1_1_SERVICE_URL + "/batch",
+          NOTIFICATION_SERVICE_URL + "/batch");
+    } catch (Throwable t) {
+      t.printStackTrace();
+      List<OccasionResponse> errors = new ArrayList<OccasionResponse>(notifications.size());
+      for (int i = 0; i < notifications.size(); i++) {
+        errors.add(new OccasionResponse(null, OccasionResponse.NOTIFICATION_TYPE_ERROR, t));
+      }
+      return errors;
     }
+  }
 
-    JsonObject recipient = stringToJsonObj(userResponse.readEntity(String.class));
-    userResponse.close();
+  /** Look up the group and recipient of an occasion, and build its notification message. */
+  private Notification createNotification(Occasion occasion, String jwtTokenString) {
+    // Call the group service to get the group name, and the user service to get the recipient
+    // information. The two calls don't depend on each other, so make them at the same time.
+    Future<JsonObject> groupLookup =
+        lookup(
+            getGroupCache(),
+            occasion.getGroupId(),
+            GROUP_SERVICE_URL + "/" + occasion.getGroupId(),
+            jwtTokenString);
+    Future<JsonObject> recipientLookup =
+        lookup(
+            getUserCache(),
+            occasion.getRecipientId(),
+            USER_SERVICE_URL + "/" + occasion.getRecipientId(),
+            jwtTokenString);
+
+    JsonObject groupResponseJson = awaitLookup(groupLookup);
+    JsonObject recipient = awaitLookup(recipientLookup);
+
+    String groupName = groupResponseJson.getString(JSON_KEY_GROUP_NAME);
     String firstName = recipient.getString(JSON_KEY_USER_FIRST_NAME);
     String lastName = recipient.getString(JSON_KEY_USER_LAST_NAME);
     String twitterHandle = recipient.getString(JSON_KEY_USER_TWITTER_HANDLE);
     String wishList = recipient.getString(JSON_KEY_USER_WISH_LIST_LINK);
 
-    // Add up the total contributions
-    double totalAmount = 0;
-
-    for (Contribution contribution : occasion.getContributions()) {
-      double contributionAmount = contribution.getAmount();
-      totalAmount = totalAmount + contributionAmount;
-    }
+    // The occasion keeps the total of its contributions, in cents.
+    BigDecimal totalAmount = BigDecimal.valueOf(occasion.getContributionTotalCents(), 2);
 
     // Create notification message to send to the notification service
     String message =
@@ -230,62 +614,89 @@ public class Orchestrator {
             occasion.getName(),
             NumberFormat.getCurrencyInstance(Locale.US).format(totalAmount));
 
-    try {
-      occasionResponse =
-          notificationRetryBean.makeNotificationConnection(
-              message,
-              this,
-              jwtTokenString,
-              NOTIFICATION_1_1_SERVICE_URL,
-              twitterHandle,
-              NOTIFICATION_SERVICE_URL);
-    } catch (Throwable t) {
-      t.printStackTrace();
-      occasionResponse = new OccasionResponse(null, OccasionResponse.NOTIFICATION_TYPE_ERROR, t);
+    return new Notification(occasion.getId().toString(), message, twitterHandle);
+  }
+
+  /**
+   * The occasion has been notified. An occasion that recurs is moved on to its next date and
+   * scheduled again, any other occasion is removed.
+   */
+  private void finishOccasion(Occasion occasion) {
+    if (occasionRecurrence != null && OccasionRecurrence.recurs(occasion.getInterval())) {
+      try {
+        Occasion next = occasionRecurrence.recur(occasion, getNotificationTime());
+        if (next != null) {
+          scheduleOccasion(next);
+        }
+      } catch (ParseException | DateTimeParseException e) {
+        logger.log(Level.WARNING, "Could not move occasion " + occasion.getId() + " on", e);
+      }
+      return;
     }
 
     if (occasionResource != null) {
       occasionResource.deleteOccasion(occasion.getId());
     }
-    return occasionResponse;
+  }
+
+  /**
+   * Get a JSON object from another service, from the cache if it has been looked up recently.
+   *
+   * @param cache The cache to use, or null to always look the object up.
+   * @param key The ID of the object, which it is cached under.
+   */
+  private Future<JsonObject> lookup(
+      LookupCache cache, String key, final String urlString, final String jwtTokenString) {
+    if (cache == null) {
+      return fetch(urlString, jwtTokenString);
+    }
+    return cache.get(key, () -> fetch(urlString, jwtTokenString));
+  }
+
+  /** Start a GET of a JSON object from another service, on the lookup executor. */
+  private CompletableFuture<JsonObject> fetch(final String urlString, final String jwtTokenString) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          Response response;
+          try {
+            response = makeConnection("GET", urlString, null, jwtTokenString);
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+          try {
+            return stringToJsonObj(response.readEntity(String.class));
+          } finally {
+            response.close();
+          }
+        },
+        getLookupExecutor());
+  }
+
+  /** Wait for a lookup to finish, up to the lookup timeout. */
+  private JsonObject awaitLookup(Future<JsonObject> lookup) {
+    long timeout = lookupTimeoutMillis > 0 ? lookupTimeoutMillis : DEFAULT_LOOKUP_TIMEOUT_MILLIS;
+    try {
+      return lookup.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      // The lookup may be shared with other callers through the cache, so leave it running. It
+      // is bounded by the client read timeout.
+      throw new RuntimeException("Lookup did not finish within " + timeout + "ms", te);
+    } catch (ExecutionException ee) {
+      throw new RuntimeException(ee.getCause());
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ie);
+    }
   }
 
   /*
    * Make an HTTP connection to the specified URL and pass in the specified payload.
+   * The connection is made with the shared service client, so it can be reused.
    */
   public Response makeConnection(
       String method, String urlString, String payload, String jwtTokenString) throws IOException {
 
-    Client client = ClientBuilder.newClient();
-
-    // Set the client connection timeout to 10 seconds. This is the amount of time the client
-    // will attempt to establish a connection before it times out.
-    client.property("http.connection.timeout", 10000);
-
-    WebTarget target = client.target(urlString);
-    Response response;
-
-    if (payload != null) {
-      // Send JSON payload
-      Invocation.Builder invoBuild = target.request(MediaType.APPLICATION_JSON_TYPE);
-      Entity<String> data = Entity.entity(payload, MediaType.APPLICATION_JSON_TYPE);
-      response =
-          invoBuild
-              .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtTokenString)
-              .build(method, data)
-              .invoke();
-
-    } else {
-      // No JSON payload to send
-      Invocation.Builder invoBuild = target.request();
-      response =
-          invoBuild
-              .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtTokenString)
-              .build(method)
-              .invoke();
-    }
-
-    return response;
+    return getServiceClient().call(method, urlString, payload, jwtTokenString);
   }
 
   public String createEventNotificationMessage(
@@ -0,0 +1,182 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microProfile.occasions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * The JAX-RS client that the orchestrator uses to call the group, user and notification services.
+ *
+ * <p>A single client is shared by every call. Its connections are kept alive between calls, and
+ * because every call goes through the same client, and so the same SSL context, a TLS session set
+ * up by one call is resumed by the next one rather than doing a full handshake each time.
+ *
+ * <p>The number of calls in progress at once is limited to the pool size. A call that would go over
+ * the limit waits for another call to finish. The response entity is read before the call gives
+ * back its pool slot, which also hands the connection back for the next call to reuse.
+ */
+@ApplicationScoped
+public class ServiceClient {
+  private static final String clazz = ServiceClient.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** Client settings used when none are configured. */
+  static final int DEFAULT_POOL_SIZE = 20;
+
+  static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+  static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+
+  /** The most calls that can be in progress at once. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.client.pool.size", defaultValue = "20")
+  private int poolSize;
+
+  /** How long to try to establish a connection before giving up. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.client.connect.timeout.ms", defaultValue = "10000")
+  private int connectTimeoutMillis;
+
+  /** How long to wait for a response once connected. */
+  @Inject
+  @ConfigProperty(name = "orchestrator.client.read.timeout.ms", defaultValue = "30000")
+  private int readTimeoutMillis;
+
+  /** The shared client. Created on first use. */
+  private volatile Client client = null;
+
+  /** One permit for each pool slot. Created with the client. */
+  private volatile Semaphore pool = null;
+
+  /**
+   * Make an HTTP call to the specified URL and pass in the specified payload.
+   *
+   * @param method The HTTP method.
+   * @param urlString The URL to call.
+   * @param payload The JSON payload to send, or null to send none.
+   * @param jwtTokenString The JWT to send in the authorization header.
+   * @return The response, with its entity already read.
+   */
+  public Response call(String method, String urlString, String payload, String jwtTokenString)
+      throws IOException {
+    Client client = getClient();
+    try {
+      pool.acquire();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a connection to " + urlString);
+    }
+
+    try {
+      WebTarget target = client.target(urlString);
+      String authorization = "Bearer " + jwtTokenString;
+      Response response;
+      if (payload != null) {
+        // Send JSON payload
+        Invocation.Builder invoBuild = target.request(MediaType.APPLICATION_JSON_TYPE);
+        Entity<String> data = Entity.entity(payload, MediaType.APPLICATION_JSON_TYPE);
+        response =
+            invoBuild.header(HttpHeaders.AUTHORIZATION, authorization).build(method, data).invoke();
+      } else {
+        // No JSON payload to send
+        Invocation.Builder invoBuild = target.request();
+        response =
+            invoBuild.header(HttpHeaders.AUTHORIZATION, authorization).build(method).invoke();
+      }
+
+      // Read the whole entity now, so the connection can be reused as soon as we're done.
+      response.bufferEntity();
+      return response;
+    } finally {
+      pool.release();
+    }
+  }
+
+  /** The number of calls in progress. */
+  public int getLeasedCount() {
+    Semaphore pool = this.pool;
+    return pool == null ? 0 : getPoolSize() - pool.availablePermits();
+  }
+
+  /** The number of pool slots not in use. */
+  public int getIdleCount() {
+    Semaphore pool = this.pool;
+    return pool == null ? getPoolSize() : pool.availablePermits();
+  }
+
+  /** The number of calls waiting for a pool slot. */
+  public int getPendingCount() {
+    Semaphore pool = this.pool;
+    return pool == null ? 0 : pool.getQueueLength();
+  }
+
+  public int getPoolSize() {
+    return poolSize > 0 ? poolSize : DEFAULT_POOL_SIZE;
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (client != null) {
+      client.close();
+      client = null;
+    }
+  }
+
+  private Client getClient() {
+    Client result = client;
+    if (result == null) {
+      synchronized (this) {
+        result = client;
+        if (result == null) {
+          int connectTimeout =
+              connectTimeoutMillis > 0 ? connectTimeoutMillis : DEFAULT_CONNECT_TIMEOUT_MILLIS;
+          int readTimeout = readTimeoutMillis > 0 ? readTimeoutMillis : DEFAULT_READ_TIMEOUT_MILLIS;
+          logger.fine(
+              "Creating client with pool size "
+                  + getPoolSize()
+                  + ", connect timeout "
+                  + connectTimeout
+                  + "ms, read timeout "
+                  + readTimeout
+                  + "ms");
+
+          // The client only reads the timeouts as a Long or a String, and ignores an Integer.
+          result =
+              ClientBuilder.newBuilder()
+                  .property("http.connection.timeout", String.valueOf(connectTimeout))
+                  .property("http.receive.timeout", String.valueOf(readTimeout))
+                  .property(
+                      "com.ibm.ws.jaxrs.client.connection.timeout", String.valueOf(connectTimeout))
+                  .property("com.ibm.ws.jaxrs.client.receive.timeout", String.valueOf(readTimeout))
+                  .property("com.ibm.ws.jaxrs.client.keepalive.connection", "keep-alive")
+                  .build();
+          pool = new Semaphore(getPoolSize(), true);
+          client = result;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,102 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+
+/**
+ * Measures comparing and hashing occasions with 10,000 contributions, and how well the hash codes
+ * of contributions spread. The comparison is also timed with {@code List.contains}, the way it used
+ * to be done. This is not a unit test, run it with
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.ContributionBenchmark
+ * </pre>
+ */
+public class ContributionBenchmark {
+
+  private static final int CONTRIBUTIONS = 10000;
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    for (int i = 0; i < CONTRIBUTIONS; i++) {
+      contributions.add(new Contribution(String.format("5a0c0c0c0c0c0c0c0c%06x", i), 5 + i % 50));
+    }
+    List<Contribution> shuffled = new ArrayList<Contribution>(contributions);
+    Collections.shuffle(shuffled, new Random(1));
+    Occasion occasion = occasion(contributions);
+    Occasion reordered = occasion(shuffled);
+
+    Set<Integer> hashes = new HashSet<Integer>();
+    for (Contribution contribution : contributions) {
+      hashes.add(contribution.hashCode());
+    }
+    System.out.println(
+        String.format(
+            "%d distinct hash codes for %d contributions", hashes.size(), contributions.size()));
+
+    // Run each more than once, so that the first runs can be ignored if the JIT was still busy.
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      boolean equal = containsBothWays(contributions, shuffled);
+      report("List.contains", start, equal);
+
+      start = System.nanoTime();
+      equal = Contribution.listsEqual(contributions, shuffled);
+      report("listsEqual", start, equal);
+
+      start = System.nanoTime();
+      equal = occasion.equals(reordered);
+      report("Occasion.equals", start, equal);
+
+      start = System.nanoTime();
+      int hash = occasion.hashCode();
+      report("Occasion.hashCode", start, hash);
+    }
+  }
+
+  /** The comparison as it was, searching each list for every contribution of the other. */
+  private static boolean containsBothWays(List<Contribution> list1, List<Contribution> list2) {
+    for (Contribution contribution : list1) {
+      if (!list2.contains(contribution)) return false;
+    }
+    for (Contribution contribution : list2) {
+      if (!list1.contains(contribution)) return false;
+    }
+    return true;
+  }
+
+  private static Occasion occasion(List<Contribution> contributions) {
+    return new Occasion(
+        null,
+        "2018-01-31",
+        "5a0c0c0c0c0c0c0c0c0c0c0c",
+        "annual",
+        "Jason Doe's Birthday",
+        "5a0c0c0c0c0c0c0c0c0c0c01",
+        "5a0c0c0c0c0c0c0c0c0c0c02",
+        contributions);
+  }
+
+  private static void report(String name, long start, Object result) {
+    System.out.println(
+        String.format(
+            "%-18s %10.3f ms (%s)", name, (System.nanoTime() - start) / 1000000.0, result));
+  }
+}
@@ -0,0 +1,95 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package benchmark;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import net.wasdev.samples.microProfile.occasions.OccasionDecoder;
+import org.bson.types.ObjectId;
+
+/**
+ * Compares the memory allocated, and the time taken, to read an occasion with the driver's default
+ * decoder and with {@link OccasionDecoder}. This is not a unit test, run it with
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.DecoderBenchmark
+ * </pre>
+ */
+public class DecoderBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 200000;
+  private static final int ITERATIONS = 200000;
+
+  public static void main(String[] args) {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    for (int i = 0; i < 5; i++) {
+      contributions.add(new Contribution(new ObjectId().toString(), 20));
+    }
+    Occasion occasion =
+        new Occasion(
+            new ObjectId(),
+            "2018-01-31",
+            new ObjectId().toString(),
+            "annual",
+            "Jason Doe's Birthday",
+            new ObjectId().toString(),
+            new ObjectId().toString(),
+            contributions);
+    final byte[] bson = new DefaultDBEncoder().encode(occasion.toDbo());
+
+    final DBDecoder defaultDecoder = DefaultDBDecoder.FACTORY.create();
+    final DBDecoder occasionDecoder = OccasionDecoder.FACTORY.create();
+
+    // Run each twice, so that the first run of each can be ignored if the JIT was still busy.
+    for (int run = 0; run < 2; run++) {
+      measure(
+          "default decoder",
+          bson,
+          bytes -> new Occasion(defaultDecoder.decode(bytes, (DBCollection) null)));
+      measure(
+          "occasion decoder",
+          bson,
+          bytes -> OccasionDecoder.toOccasion(occasionDecoder.decode(bytes, (DBCollection) null)));
+    }
+  }
+
+  private static void measure(String name, byte[] bson, Function<byte[], Occasion> decode) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    int checksum = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      checksum += decode.apply(bson).getContributions().size();
+    }
+
+    long startBytes = threads.getThreadAllocatedBytes(threadId);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      checksum += decode.apply(bson).getContributions().size();
+    }
+    long time = System.nanoTime() - startTime;
+    long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+    System.out.println(
+        String.format(
+            "%-20s %8d bytes/op %8d ns/op (checksum %d)",
+            name, bytes / ITERATIONS, time / ITERATIONS, checksum));
+  }
+}
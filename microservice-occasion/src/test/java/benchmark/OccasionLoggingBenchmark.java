@@ -0,0 +1,115 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import org.bson.types.ObjectId;
+
+/**
+ * Measures the throughput, and the memory allocated, of building an occasion and converting it to a
+ * DBObject and JSON and back, with the occasion logger at INFO and at FINER. At FINER, every record
+ * is formatted, as the server's trace would format it. This is not a unit test, run it with
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.OccasionLoggingBenchmark
+ * </pre>
+ */
+public class OccasionLoggingBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 5000;
+  private static final int ITERATIONS = 10000;
+
+  public static void main(String[] args) {
+    Logger logger = Logger.getLogger(Occasion.class.getName());
+    logger.setUseParentHandlers(false);
+    logger.addHandler(new FormattingHandler());
+
+    // Run each twice, so that the first run of each can be ignored if the JIT was still busy.
+    for (int run = 0; run < 2; run++) {
+      for (Level level : new Level[] {Level.INFO, Level.FINER}) {
+        logger.setLevel(level);
+        measure(level);
+      }
+    }
+  }
+
+  private static void measure(Level level) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    int checksum = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      checksum += roundTrip();
+    }
+
+    long startBytes = threads.getThreadAllocatedBytes(threadId);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      checksum += roundTrip();
+    }
+    long time = System.nanoTime() - startTime;
+    long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+    System.out.println(
+        String.format(
+            "%-6s %10d ops/s %8d bytes/op (checksum %d)",
+            level, ITERATIONS * 1000000000L / time, bytes / ITERATIONS, checksum));
+  }
+
+  /** Build an occasion, and convert it the ways the service does. */
+  private static int roundTrip() {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    for (int i = 0; i < 5; i++) {
+      contributions.add(new Contribution("5a0c0c0c0c0c0c0c0c0c0c0" + i, 20));
+    }
+    Occasion occasion =
+        new Occasion(
+            new ObjectId(),
+            "2018-01-31",
+            "5a0c0c0c0c0c0c0c0c0c0c0c",
+            "annual",
+            "Jason Doe's Birthday",
+            "5a0c0c0c0c0c0c0c0c0c0c01",
+            "5a0c0c0c0c0c0c0c0c0c0c02",
+            contributions);
+    Occasion copy = new Occasion(occasion.toDbo());
+    return copy.toJson().size();
+  }
+
+  /** Formats each record, like a log or trace file would, and throws the result away. */
+  private static class FormattingHandler extends Handler {
+    private final SimpleFormatter formatter = new SimpleFormatter();
+    private int length = 0;
+
+    @Override
+    public void publish(LogRecord record) {
+      if (isLoggable(record)) {
+        length += formatter.format(record).length();
+      }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
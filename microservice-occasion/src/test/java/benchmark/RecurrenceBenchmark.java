@@ -0,0 +1,88 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import net.wasdev.samples.microProfile.occasions.NotificationTime;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.OccasionRecurrence;
+import org.bson.types.ObjectId;
+
+/**
+ * Measures the time, and the memory allocated, to work out the next occurrence of a million
+ * occasions and when it is notified, as the orchestrator does when each one has been notified. The
+ * occasions have a mix of intervals and of groups with their own time zones, and some are a few
+ * occurrences behind. This is not a unit test, run it with
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; benchmark.RecurrenceBenchmark
+ * </pre>
+ */
+public class RecurrenceBenchmark {
+
+  private static final int OCCASIONS = 1000000;
+  private static final String[] INTERVALS = {"annual", "monthly", "weekly", "daily", "once"};
+
+  public static void main(String[] args) {
+    NotificationTime notificationTime =
+        NotificationTime.parse("08:00", "America/Chicago", "g1=Europe/Paris,g2=Asia/Tokyo");
+
+    // The occasions fall over the year before now, so each one is notified up to a year late.
+    LocalDate today = notificationTime.today();
+    Occasion[] occasions = new Occasion[OCCASIONS];
+    for (int i = 0; i < OCCASIONS; i++) {
+      occasions[i] =
+          new Occasion(
+              new ObjectId(),
+              today.minusDays(i % 365).toString(),
+              "g" + (i % 4),
+              INTERVALS[i % INTERVALS.length],
+              "name",
+              "recipient",
+              "organizer",
+              null);
+    }
+    long now = System.currentTimeMillis();
+
+    // Run it a few times, so that the first runs can be ignored if the JIT was still busy.
+    for (int run = 0; run < 3; run++) {
+      measure(occasions, notificationTime, now);
+    }
+  }
+
+  private static void measure(Occasion[] occasions, NotificationTime notificationTime, long now) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    long checksum = 0;
+    long startBytes = threads.getThreadAllocatedBytes(threadId);
+    long startTime = System.nanoTime();
+    for (Occasion occasion : occasions) {
+      LocalDate next = OccasionRecurrence.nextOccurrence(occasion, notificationTime, now);
+      if (next != null) {
+        checksum += notificationTime.getNotifyAtMillis(next, occasion.getGroupId());
+      }
+    }
+    long time = System.nanoTime() - startTime;
+    long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+    System.out.println(
+        String.format(
+            "%d occasions in %d ms, %d ns/op %d bytes/op (checksum %d)",
+            occasions.length,
+            time / 1000000,
+            time / occasions.length,
+            bytes / occasions.length,
+            checksum));
+  }
+}
@@ -406,6 +406,139 @@ public class OccasionResourceTest {
         clazz, name.getMethodName(), "\n\n- - - - - Exiting " + name.getMethodName() + "\n\n");
   }
 
+  /**
+   * Test adding a contribution with POST and changing it with PUT. The stored total should follow
+   * each change.
+   */
+  @Test
+  public void testContributions() {
+    logger.entering(
+        clazz, name.getMethodName(), "\n\n+ + + + + Entering " + name.getMethodName() + "\n\n");
+
+    // build the json payload
+    List<Occasion.Contribution> contributions = new ArrayList<>();
+    contributions.add(new Occasion.Contribution("0013", 20));
+    Occasion occasion =
+        new Occasion(
+            /* ID            */ null,
+            /* date          */ "2117-07-31",
+            /* group ID      */ "0005",
+            /* interval      */ "annual",
+            /* occasion name */ "John Doe's Birthday",
+            /* organizer ID  */ "0013",
+            /* recipient ID  */ "9999",
+            contributions);
+
+    // create the occasion with POST, so that the orchestrator schedules it.
+    String responseString = testEndpointJson("/", "POST", occasion.toString(), "", 200);
+    String id = (String) ((DBObject) JSON.parse(responseString)).get(Occasion.OCCASION_ID_KEY);
+
+    // add a contribution, then try to add it again
+    String contribution = new Occasion.Contribution("0014", 30.25).toJson().toString();
+    testEndpointJson("/" + id + "/contributions", "POST", contribution, "", 200);
+    testEndpointJson(
+        "/" + id + "/contributions", "POST", contribution, "user has already contributed", 400);
+
+    // change the first contribution, and add one for a new user
+    String amount =
+        Json.createObjectBuilder()
+            .add(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY, 25)
+            .build()
+            .toString();
+    testEndpointJson("/" + id + "/contributions/0013", "PUT", amount, "", 200);
+    testEndpointJson("/" + id + "/contributions/0015", "PUT", amount, "", 200);
+
+    DBObject dbo =
+        collection.findOne(new BasicDBObject(Occasion.OCCASION_ID_KEY, new ObjectId(id)));
+    Occasion resultOccasion = new Occasion(dbo);
+    contributions = new ArrayList<>();
+    contributions.add(new Occasion.Contribution("0013", 25));
+    contributions.add(new Occasion.Contribution("0014", 30.25));
+    contributions.add(new Occasion.Contribution("0015", 25));
+
+    assertTrue(
+        name.getMethodName() + ": contributions do not match:\n\n" + resultOccasion,
+        Occasion.Contribution.listsEqual(contributions, resultOccasion.getContributions()));
+    assertTrue(
+        name.getMethodName() + ": stored total is wrong:\n\n" + dbo,
+        8025L == ((Number) dbo.get(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY)).longValue());
+
+    // contributions to an occasion that does not exist
+    String missingId = new ObjectId().toString();
+    testEndpointJson(
+        "/" + missingId + "/contributions",
+        "POST",
+        contribution,
+        "no occasion found for given id",
+        400);
+    testEndpointJson(
+        "/" + missingId + "/contributions/0013",
+        "PUT",
+        amount,
+        "no occasion found for given id",
+        400);
+
+    logger.exiting(
+        clazz, name.getMethodName(), "\n\n- - - - - Exiting " + name.getMethodName() + "\n\n");
+  }
+
+  /**
+   * Test adding a contribution to an occasion that was stored before the total of its contributions
+   * was. The total should count the contributions it already had.
+   */
+  @Test
+  public void testContributionTotalBackfill() {
+    logger.entering(
+        clazz, name.getMethodName(), "\n\n+ + + + + Entering " + name.getMethodName() + "\n\n");
+
+    // store an occasion the way it was stored before it had a total
+    List<Occasion.Contribution> contributions = new ArrayList<>();
+    contributions.add(new Occasion.Contribution("0013", 20));
+    Occasion occasion =
+        new Occasion(
+            /* ID            */ new ObjectId(),
+            /* date          */ "2117-07-31",
+            /* group ID      */ "0005",
+            /* interval      */ "annual",
+            /* occasion name */ "John Doe's Birthday",
+            /* organizer ID  */ "0013",
+            /* recipient ID  */ "9999",
+            contributions);
+    BasicDBObject dbo = occasion.toDbo();
+    dbo.removeField(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY);
+    collection.insert(dbo);
+    String id = occasion.getId().toString();
+
+    // the total is worked out from the contributions until it is stored
+    String responseString = testEndpointJson("/" + id, "GET", "", "", 200);
+    assertTrue(
+        name.getMethodName() + ": total before the backfill is wrong:\n\n" + responseString,
+        2000L == getTotalCents((DBObject) JSON.parse(responseString)));
+
+    // add a contribution, which stores the total first
+    String contribution = new Occasion.Contribution("0014", 30.25).toJson().toString();
+    testEndpointJson("/" + id + "/contributions", "POST", contribution, "", 200);
+
+    DBObject stored =
+        collection.findOne(new BasicDBObject(Occasion.OCCASION_ID_KEY, occasion.getId()));
+    assertTrue(
+        name.getMethodName() + ": stored total is wrong:\n\n" + stored,
+        5025L == getTotalCents(stored));
+
+    responseString = testEndpointJson("/" + id, "GET", "", "", 200);
+    assertTrue(
+        name.getMethodName() + ": returned total is wrong:\n\n" + responseString,
+        5025L == getTotalCents((DBObject) JSON.parse(responseString)));
+
+    logger.exiting(
+        clazz, name.getMethodName(), "\n\n- - - - - Exiting " + name.getMethodName() + "\n\n");
+  }
+
+  private static long getTotalCents(DBObject occasion) {
+    Number totalCents = (Number) occasion.get(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY);
+    return (null == totalCents) ? -1 : totalCents.longValue();
+  }
+
   /** Test the deletion of an existing occasion. Add it, then delete it. */
   @Test
   public void testDELETE() {
@@ -543,6 +676,86 @@ public class OccasionResourceTest {
         clazz, name.getMethodName(), "\n\n- - - - - Exiting " + name.getMethodName() + "\n\n");
   }
 
+  /** Test paging, filtering and projecting the list of occasions for a given group */
+  @Test
+  public void testOccasionsForGroupPaged() {
+    logger.entering(
+        clazz, name.getMethodName(), "\n\n+ + + + + Entering " + name.getMethodName() + "\n\n");
+
+    String groupId = "4444";
+    String[] dates = {"2117-03-31", "2018-05-31", "2117-11-30"};
+
+    // insert the occasions into the db, in order of ID
+    Occasion[] occasions = new Occasion[dates.length];
+    for (int i = 0; i < dates.length; i++) {
+      List<Occasion.Contribution> contributions = new ArrayList<>();
+      contributions.add(new Occasion.Contribution("000" + i, 10));
+      Occasion occasion =
+          new Occasion(
+              /* ID            */ null,
+              /* date          */ dates[i],
+              /* group ID      */ groupId,
+              /* interval      */ "annual",
+              /* occasion name */ "Occasion " + i,
+              /* organizer ID  */ "0001",
+              /* recipient ID  */ "9990",
+              contributions);
+      collection.insert(occasion.toDbo());
+      occasions[i] = new Occasion(collection.findOne(occasion.toDbo()));
+    }
+
+    // the first page has the first two occasions
+    JsonBuilderFactory factory = Json.createBuilderFactory(null);
+    String expected =
+        factory
+            .createArrayBuilder()
+            .add(occasions[0].toJson())
+            .add(occasions[1].toJson())
+            .build()
+            .toString();
+    testEndpoint("/?groupId=" + groupId + "&limit=2", "GET", expected, 200);
+
+    // the next page starts after the last occasion of the first page
+    expected = factory.createArrayBuilder().add(occasions[2].toJson()).build().toString();
+    testEndpoint(
+        "/?groupId=" + groupId + "&limit=2&after=" + occasions[1].getId(), "GET", expected, 200);
+
+    // only the occasions in the date range are returned
+    expected =
+        factory
+            .createArrayBuilder()
+            .add(occasions[0].toJson())
+            .add(occasions[2].toJson())
+            .build()
+            .toString();
+    testEndpoint("/?groupId=" + groupId + "&from=2117-01-01&to=2117-12-31", "GET", expected, 200);
+
+    // only the asked for fields are returned
+    expected =
+        factory
+            .createArrayBuilder()
+            .add(
+                factory
+                    .createObjectBuilder()
+                    .add(Occasion.OCCASION_ID_KEY, occasions[1].getId().toString())
+                    .add(Occasion.OCCASION_NAME_KEY, occasions[1].getName()))
+            .build()
+            .toString();
+    testEndpoint(
+        "/?groupId=" + groupId + "&from=2018-01-01&to=2018-12-31&fields=name",
+        "GET",
+        expected,
+        200);
+
+    // bad parameters are rejected
+    testEndpoint("/?groupId=" + groupId + "&fields=password", "GET", "", 400);
+    testEndpoint("/?groupId=" + groupId + "&from=tomorrow", "GET", "", 400);
+    testEndpoint("/?groupId=" + groupId + "&after=xxxx", "GET", "", 400);
+
+    logger.exiting(
+        clazz, name.getMethodName(), "\n\n- - - - - Exiting " + name.getMethodName() + "\n\n");
+  }
+
   /**
    * Helper method for testing request success/failure
    *
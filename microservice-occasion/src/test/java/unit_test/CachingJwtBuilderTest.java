@@ -0,0 +1,168 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.wasdev.samples.microProfile.occasions.CachingJwtBuilder;
+import net.wasdev.samples.microProfile.occasions.JwtBuilder;
+import net.wasdev.samples.microProfile.occasions.JwtCacheState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CachingJwtBuilderTest {
+
+  private JwtBuilder delegate;
+  private JwtCacheState state;
+  private CachingJwtBuilder cache;
+
+  @Before
+  public void setUp() {
+    delegate = Mockito.mock(JwtBuilder.class);
+    state = new JwtCacheState();
+    cache = newCache(delegate);
+  }
+
+  @After
+  public void tearDown() {
+    state.shutdown();
+  }
+
+  /** A token that is far from its expiry should be reused. */
+  @Test
+  public void testTokenIsReused() {
+    String token = jwtExpiringIn(TimeUnit.HOURS.toSeconds(1));
+    doReturn(token).when(delegate).buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(token, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+    }
+
+    verify(delegate, times(1)).buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    assertEquals(1, cache.getMissCount());
+    assertEquals(9, cache.getHitCount());
+  }
+
+  /** A token inside the refresh margin is still used, and replaced in the background. */
+  @Test
+  public void testTokenIsRefreshedInBackground() {
+    String expiring = jwtExpiringIn(TimeUnit.MINUTES.toSeconds(2));
+    String replacement = jwtExpiringIn(TimeUnit.HOURS.toSeconds(1));
+    doReturn(expiring)
+        .doReturn(replacement)
+        .when(delegate)
+        .buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+
+    assertEquals(expiring, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+    assertEquals(expiring, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+
+    verify(delegate, timeout(10000).times(2))
+        .buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  /** A token that is about to expire is never handed out. */
+  @Test
+  public void testExpiredTokenIsReplaced() {
+    String expired = jwtExpiringIn(10);
+    String replacement = jwtExpiringIn(TimeUnit.HOURS.toSeconds(1));
+    doReturn(expired)
+        .doReturn(replacement)
+        .when(delegate)
+        .buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+
+    assertEquals(expired, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+    assertEquals(replacement, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  /** Tokens with different claims are cached separately. */
+  @Test
+  public void testClaimsAreCachedSeparately() {
+    String orchestratorToken = jwtExpiringIn(TimeUnit.HOURS.toSeconds(1));
+    String userToken = jwtExpiringIn(TimeUnit.HOURS.toSeconds(1) + 1);
+    doReturn(orchestratorToken)
+        .when(delegate)
+        .buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    doReturn(userToken).when(delegate).buildCompactJWT("users", "user");
+
+    assertEquals(orchestratorToken, cache.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR"));
+    assertEquals(userToken, cache.buildCompactJWT("users", "user"));
+    assertEquals(2, cache.getMissCount());
+  }
+
+  /**
+   * Decorators that share their state should count together, and refresh their tokens on the same
+   * thread.
+   */
+  @Test
+  public void testStateIsShared() throws Exception {
+    final Set<String> refreshThreads = Collections.synchronizedSet(new HashSet<String>());
+    final CountDownLatch refreshed = new CountDownLatch(2);
+    JwtBuilder otherDelegate = Mockito.mock(JwtBuilder.class);
+    CachingJwtBuilder other = newCache(otherDelegate);
+    for (JwtBuilder builder : new JwtBuilder[] {delegate, otherDelegate}) {
+      doReturn(jwtExpiringIn(TimeUnit.MINUTES.toSeconds(2)))
+          .doAnswer(
+              invocation -> {
+                refreshThreads.add(Thread.currentThread().getName());
+                refreshed.countDown();
+                return jwtExpiringIn(TimeUnit.HOURS.toSeconds(1));
+              })
+          .when(builder)
+          .buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    }
+
+    for (CachingJwtBuilder builder : new CachingJwtBuilder[] {cache, other}) {
+      builder.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+      builder.buildCompactJWT("orchestrator", "INTERNAL-ORCHESTRATOR");
+    }
+
+    assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+    assertEquals(2, state.getMissCount());
+    assertEquals(2, other.getHitCount());
+    assertEquals(Collections.singleton("jwt-refresh-1"), refreshThreads);
+  }
+
+  private CachingJwtBuilder newCache(JwtBuilder delegate) {
+    CachingJwtBuilder cache = new CachingJwtBuilder();
+    cache.setDelegate(delegate);
+    cache.setState(state);
+    cache.setRefreshMarginSeconds(300);
+    return cache;
+  }
+
+  /** Make an unsigned compact JWT with the given lifetime. */
+  private String jwtExpiringIn(long seconds) {
+    long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds;
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+    String claims =
+        encoder.encodeToString(("{\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+    return header + "." + claims + ".";
+  }
+}
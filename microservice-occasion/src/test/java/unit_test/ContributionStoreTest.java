@@ -0,0 +1,85 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.mongodb.BasicDBObject;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.JsonObject;
+import net.wasdev.samples.microProfile.occasions.ContributionStore;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import org.junit.Test;
+
+public class ContributionStoreTest {
+
+  /** The total should be kept as contributions are added and changed. */
+  @Test
+  public void testRunningTotal() {
+    ContributionStore store = new ContributionStore();
+    store.add("0001", 2000);
+    store.add("0002", 5050);
+    assertEquals(7050, store.getTotalCents());
+
+    assertEquals(-1050, store.put("0002", 4000));
+    assertEquals(1000, store.put("0003", 1000));
+    assertEquals(7000, store.getTotalCents());
+    assertEquals(3, store.size());
+    assertEquals(4000, store.getCents(store.indexOf("0002")));
+    assertEquals(-1, store.indexOf("0004"));
+  }
+
+  /** Amounts that are not exact in binary should still add up to the exact number of cents. */
+  @Test
+  public void testNoRoundingError() {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    for (int i = 0; i < 10; i++) {
+      contributions.add(new Contribution("000" + i, 0.1));
+    }
+    ContributionStore store = new ContributionStore(contributions);
+
+    assertEquals(100, store.getTotalCents());
+    assertEquals(0.1, store.asList().get(9).getAmount(), 0);
+  }
+
+  /** The same user IDs should share one string. */
+  @Test
+  public void testUserIdsInterned() {
+    ContributionStore store = new ContributionStore();
+    store.add(new String("0001"), 100);
+    store.add(new String("0001"), 200);
+
+    assertSame(store.getUserId(0), store.getUserId(1));
+  }
+
+  /** The total should be stored and returned with the contributions, in cents. */
+  @Test
+  public void testOccasionTotal() {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    contributions.add(new Contribution("0001", 20));
+    contributions.add(new Contribution("0002", 50.25));
+    Occasion occasion =
+        new Occasion(null, "2017-10-25", "0001", "annual", "Name", "0001", "0004", contributions);
+
+    BasicDBObject dbo = occasion.toDbo();
+    JsonObject json = occasion.toJson();
+
+    assertEquals(7025, occasion.getContributionTotalCents());
+    assertEquals(7025L, dbo.get(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY));
+    assertEquals(
+        7025, json.getJsonNumber(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY).longValue());
+    assertEquals(7025, new Occasion(dbo).getContributionTotalCents());
+    assertEquals(7025, new Occasion(json).getContributionTotalCents());
+  }
+}
@@ -0,0 +1,138 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import net.wasdev.samples.microprofile.mongo.DocumentView;
+import net.wasdev.samples.microprofile.mongo.DocumentViewWriter;
+import net.wasdev.samples.microprofile.mongo.RawDocument;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+public class DocumentViewWriterTest {
+
+  /** An occasion should be written the same as Occasion writes it. */
+  @Test
+  public void testOccasion() throws Exception {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    contributions.add(new Contribution("0001", 20));
+    contributions.add(new Contribution("0002", 50.5));
+    Occasion occasion =
+        new Occasion(
+            new ObjectId(),
+            "2017-10-25",
+            "0001",
+            "annual",
+            "John Doe's Birthday",
+            "0001",
+            "0004",
+            contributions);
+
+    String json = write(new DocumentView(raw(occasion.toDbo())));
+
+    assertEquals(occasion.toJson(), read(json));
+  }
+
+  /** Only the included fields should be written, under their new names. */
+  @Test
+  public void testIncludeAndRename() throws Exception {
+    ObjectId id = new ObjectId();
+    BasicDBObject dbo =
+        new BasicDBObject("_id", id)
+            .append("name", "Jane")
+            .append("password", "secret")
+            .append("nested", new BasicDBObject("_id", "nested ids are not renamed"));
+
+    JsonObject json =
+        read(
+            write(new DocumentView(raw(dbo)).include("_id", "name", "nested").rename("_id", "id")));
+
+    assertEquals(id.toString(), json.getString("id"));
+    assertEquals("Jane", json.getString("name"));
+    assertEquals("nested ids are not renamed", json.getJsonObject("nested").getString("_id"));
+    assertFalse(json.containsKey("password"));
+    assertFalse(json.containsKey("_id"));
+  }
+
+  /** Each type that has a JSON equivalent should be written, and the others skipped. */
+  @Test
+  public void testTypes() throws Exception {
+    BasicDBList list = new BasicDBList();
+    list.add(1);
+    list.add("two");
+    list.add(new BasicDBObject("three", 3L));
+    BasicDBObject dbo =
+        new BasicDBObject("int", 42)
+            .append("long", 1L << 40)
+            .append("double", 2.5)
+            .append("boolean", true)
+            .append("null", null)
+            .append("date", new Date(1000))
+            .append("binary", new Binary(new byte[] {1, 2, 3}))
+            .append("regex", Pattern.compile("a.*b"))
+            .append("list", list)
+            .append("unicode", "\u00e9t\u00e9 \u2603")
+            .append("last", "still read");
+
+    JsonObject json = read(write(new DocumentView(raw(dbo))));
+
+    assertEquals(42, json.getInt("int"));
+    assertEquals(1L << 40, json.getJsonNumber("long").longValue());
+    assertEquals(2.5, json.getJsonNumber("double").doubleValue(), 0);
+    assertEquals(true, json.getBoolean("boolean"));
+    assertEquals(true, json.isNull("null"));
+    assertEquals(1000, json.getJsonNumber("date").longValue());
+    assertFalse(json.containsKey("binary"));
+    assertFalse(json.containsKey("regex"));
+    assertEquals(1, json.getJsonArray("list").getInt(0));
+    assertEquals("two", json.getJsonArray("list").getString(1));
+    assertEquals(3, json.getJsonArray("list").getJsonObject(2).getInt("three"));
+    assertEquals("\u00e9t\u00e9 \u2603", json.getString("unicode"));
+    assertEquals("still read", json.getString("last"));
+  }
+
+  private RawDocument raw(DBObject dbo) {
+    byte[] bson = new DefaultDBEncoder().encode(dbo);
+    return (RawDocument) RawDocument.FACTORY.create().decode(bson, (DBCollection) null);
+  }
+
+  private String write(DocumentView view) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new DocumentViewWriter().writeTo(view, DocumentView.class, null, null, null, null, out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private JsonObject read(String json) {
+    try (JsonReader reader = Json.createReader(new StringReader(json))) {
+      return reader.readObject();
+    }
+  }
+}
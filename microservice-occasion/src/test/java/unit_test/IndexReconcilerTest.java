@@ -0,0 +1,113 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import java.util.Arrays;
+import java.util.Collections;
+import net.wasdev.samples.microprofile.mongo.IndexReconciler;
+import net.wasdev.samples.microprofile.mongo.IndexReconciler.Status;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class IndexReconcilerTest {
+
+  private DBCollection collection;
+  private IndexReconciler reconciler;
+
+  @Before
+  public void setUp() {
+    DB database = Mockito.mock(DB.class);
+    collection = Mockito.mock(DBCollection.class);
+    doReturn(collection).when(database).getCollection("occasions");
+    reconciler = new IndexReconciler(database);
+  }
+
+  /** A missing index should be created in the background, with the default name. */
+  @Test
+  public void testMissingIndexIsCreated() {
+    doReturn(Arrays.asList(index(new BasicDBObject("_id", 1)))).when(collection).getIndexInfo();
+    BasicDBObject keys = new BasicDBObject("groupId", 1).append("date", 1);
+    String name = reconciler.declare("occasions", keys, new BasicDBObject("sparse", true));
+    assertEquals("groupId_1_date_1", name);
+    assertEquals(Status.PENDING, reconciler.getStatus("occasions", name));
+
+    reconciler.reconcile();
+
+    verify(collection)
+        .createIndex(
+            keys,
+            new BasicDBObject("name", name).append("sparse", true).append("background", true));
+    assertEquals(Status.READY, reconciler.getStatus("occasions", name));
+  }
+
+  /** An index that exists should be left alone, even if its keys come back as doubles. */
+  @Test
+  public void testExistingIndexIsKept() {
+    doReturn(Arrays.asList(index(new BasicDBObject("groupId", 1.0).append("date", 1.0))))
+        .when(collection)
+        .getIndexInfo();
+    String name =
+        reconciler.declare("occasions", new BasicDBObject("groupId", 1).append("date", 1), null);
+
+    reconciler.reconcile();
+
+    verify(collection, never()).createIndex(any(DBObject.class), any(DBObject.class));
+    assertEquals(Status.READY, reconciler.getStatus("occasions", name));
+  }
+
+  /** An index on the same fields in a different order is a different index. */
+  @Test
+  public void testKeyOrderMatters() {
+    doReturn(Arrays.asList(index(new BasicDBObject("date", 1).append("groupId", 1))))
+        .when(collection)
+        .getIndexInfo();
+    reconciler.declare("occasions", new BasicDBObject("groupId", 1).append("date", 1), null);
+
+    reconciler.reconcile();
+
+    verify(collection).createIndex(any(DBObject.class), any(DBObject.class));
+  }
+
+  /** An index that cannot be built should be reported, and not stop the others. */
+  @Test
+  public void testFailureIsReported() {
+    doReturn(Collections.emptyList()).when(collection).getIndexInfo();
+    BasicDBObject badKeys = new BasicDBObject("userName", 1);
+    doThrow(new MongoException("duplicate key"))
+        .when(collection)
+        .createIndex(Mockito.eq(badKeys), any(DBObject.class));
+    String bad = reconciler.declare("occasions", badKeys, new BasicDBObject("unique", true));
+    String good = reconciler.declare("occasions", new BasicDBObject("date", 1), null);
+
+    reconciler.reconcile();
+
+    assertEquals(Status.FAILED, reconciler.getStatus("occasions", bad));
+    assertEquals(Status.READY, reconciler.getStatus("occasions", good));
+    assertEquals(2, reconciler.getStatus().size());
+  }
+
+  private DBObject index(DBObject keys) {
+    return new BasicDBObject("key", keys).append("name", "existing");
+  }
+}
@@ -0,0 +1,131 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.json.Json;
+import javax.json.JsonObject;
+import net.wasdev.samples.microProfile.occasions.LookupCache;
+import org.junit.Test;
+
+public class LookupCacheTest {
+
+  private final AtomicInteger lookups = new AtomicInteger();
+
+  /** A value that was looked up recently should come from the cache. */
+  @Test
+  public void testHit() throws Exception {
+    LookupCache cache = new LookupCache("user", 10, TimeUnit.MINUTES.toMillis(5));
+
+    JsonObject first = cache.get("user1", loader("Jane")).get();
+    JsonObject second = cache.get("user1", loader("Jane")).get();
+
+    assertSame(first, second);
+    assertEquals(1, lookups.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5, cache.getHitRatio(), 0.001);
+  }
+
+  /** Callers that miss while a value is being looked up should share the lookup. */
+  @Test
+  public void testConcurrentMissesShareLookup() throws Exception {
+    LookupCache cache = new LookupCache("user", 10, TimeUnit.MINUTES.toMillis(5));
+    final CompletableFuture<JsonObject> slowLookup = new CompletableFuture<JsonObject>();
+
+    CompletableFuture<JsonObject> first =
+        cache.get(
+            "user1",
+            () -> {
+              lookups.incrementAndGet();
+              return slowLookup;
+            });
+    CompletableFuture<JsonObject> second = cache.get("user1", loader("Jane"));
+    assertEquals(1, lookups.get());
+
+    slowLookup.complete(user("Jane"));
+    assertEquals("Jane", first.get().getString("firstName"));
+    assertEquals("Jane", second.get().getString("firstName"));
+  }
+
+  /** A failed lookup should not be cached. */
+  @Test
+  public void testFailureIsNotCached() throws Exception {
+    LookupCache cache = new LookupCache("user", 10, TimeUnit.MINUTES.toMillis(5));
+    CompletableFuture<JsonObject> failed = new CompletableFuture<JsonObject>();
+    failed.completeExceptionally(new RuntimeException("user service is down"));
+
+    assertTrue(cache.get("user1", () -> failed).isCompletedExceptionally());
+    assertEquals(0, cache.getSize());
+    assertEquals("Jane", cache.get("user1", loader("Jane")).get().getString("firstName"));
+  }
+
+  /** The least recently used value should be evicted once the cache is full. */
+  @Test
+  public void testSizeBound() throws Exception {
+    LookupCache cache = new LookupCache("user", 2, TimeUnit.MINUTES.toMillis(5));
+
+    cache.get("user1", loader("Jane")).get();
+    cache.get("user2", loader("John")).get();
+    cache.get("user1", loader("Jane")).get();
+    cache.get("user3", loader("Joan")).get();
+
+    assertEquals(2, cache.getSize());
+    assertEquals(1, cache.getEvictionCount());
+
+    // user2 was the least recently used, so it was evicted and must be looked up again.
+    int before = lookups.get();
+    cache.get("user1", loader("Jane")).get();
+    cache.get("user2", loader("John")).get();
+    assertEquals(before + 1, lookups.get());
+  }
+
+  /** A value should be looked up again once it expires. */
+  @Test
+  public void testExpiry() throws Exception {
+    LookupCache cache = new LookupCache("user", 10, 0);
+
+    cache.get("user1", loader("Jane")).get();
+    cache.get("user1", loader("Jane")).get();
+
+    assertEquals(2, lookups.get());
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  /** An invalidated value should be looked up again. */
+  @Test
+  public void testInvalidate() throws Exception {
+    LookupCache cache = new LookupCache("user", 10, TimeUnit.MINUTES.toMillis(5));
+
+    cache.get("user1", loader("Jane")).get();
+    cache.invalidate("user1");
+    assertEquals("Janet", cache.get("user1", loader("Janet")).get().getString("firstName"));
+    assertEquals(2, lookups.get());
+  }
+
+  private Supplier<CompletableFuture<JsonObject>> loader(final String firstName) {
+    return () -> {
+      lookups.incrementAndGet();
+      return CompletableFuture.completedFuture(user(firstName));
+    };
+  }
+
+  private JsonObject user(String firstName) {
+    return Json.createObjectBuilder().add("firstName", firstName).build();
+  }
+}
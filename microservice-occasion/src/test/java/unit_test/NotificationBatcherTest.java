@@ -0,0 +1,132 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import net.wasdev.samples.microProfile.occasions.Notification;
+import net.wasdev.samples.microProfile.occasions.NotificationBatcher;
+import net.wasdev.samples.microProfile.occasions.OccasionResponse;
+import org.junit.After;
+import org.junit.Test;
+
+public class NotificationBatcherTest {
+
+  private NotificationBatcher batcher;
+
+  /** The batches that were sent. */
+  private final List<List<Notification>> batches =
+      Collections.synchronizedList(new ArrayList<List<Notification>>());
+
+  @After
+  public void tearDown() {
+    if (batcher != null) {
+      batcher.shutdown();
+    }
+  }
+
+  /** Notifications that are submitted together should be sent in full batches. */
+  @Test
+  public void testFullBatches() throws Exception {
+    batcher = new NotificationBatcher(10, TimeUnit.SECONDS.toMillis(30), echo());
+
+    List<CompletableFuture<OccasionResponse>> responses =
+        new ArrayList<CompletableFuture<OccasionResponse>>();
+    for (int i = 0; i < 20; i++) {
+      responses.add(batcher.submit(notification(i)));
+    }
+
+    // Each notification gets the response for its own position in the batch.
+    for (int i = 0; i < 20; i++) {
+      assertEquals(
+          "occasion" + i, responses.get(i).get(10, TimeUnit.SECONDS).getNotificationType());
+    }
+    assertEquals(2, batches.size());
+    assertEquals(10, batches.get(0).size());
+    assertEquals(10, batches.get(1).size());
+  }
+
+  /** A batch that does not fill up should be sent once the linger time is up. */
+  @Test
+  public void testLinger() throws Exception {
+    batcher = new NotificationBatcher(10, 50, echo());
+
+    OccasionResponse response = batcher.submit(notification(0)).get(10, TimeUnit.SECONDS);
+    assertEquals("occasion0", response.getNotificationType());
+    assertEquals(1, batches.size());
+    assertEquals(1, batcher.getBatchCount());
+  }
+
+  /** If a batch cannot be sent, every notification in it should fail. */
+  @Test
+  public void testSendFailure() throws Exception {
+    final RuntimeException failure = new RuntimeException("notification service is down");
+    batcher =
+        new NotificationBatcher(
+            2,
+            TimeUnit.SECONDS.toMillis(30),
+            notifications -> {
+              throw failure;
+            });
+
+    CompletableFuture<OccasionResponse> first = batcher.submit(notification(0));
+    CompletableFuture<OccasionResponse> second = batcher.submit(notification(1));
+    for (CompletableFuture<OccasionResponse> response : Arrays.asList(first, second)) {
+      try {
+        response.get(10, TimeUnit.SECONDS);
+        fail("The notification should not have been sent");
+      } catch (ExecutionException ee) {
+        assertSame(failure, ee.getCause());
+      }
+    }
+  }
+
+  /** A send that returns the wrong number of responses should fail the batch. */
+  @Test
+  public void testMissingResponses() throws Exception {
+    batcher =
+        new NotificationBatcher(1, 0, notifications -> Collections.<OccasionResponse>emptyList());
+
+    try {
+      batcher.submit(notification(0)).get(10, TimeUnit.SECONDS);
+      fail("The notification should not have been answered");
+    } catch (ExecutionException ee) {
+      assertTrue(ee.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  /** Answer each notification with a response that names its occasion. */
+  private Function<List<Notification>, List<OccasionResponse>> echo() {
+    return notifications -> {
+      batches.add(notifications);
+      List<OccasionResponse> responses = new ArrayList<OccasionResponse>();
+      for (Notification notification : notifications) {
+        responses.add(new OccasionResponse(null, notification.getOccasionId(), null));
+      }
+      return responses;
+    };
+  }
+
+  private Notification notification(int i) {
+    return new Notification("occasion" + i, "message" + i, "handle" + i);
+  }
+}
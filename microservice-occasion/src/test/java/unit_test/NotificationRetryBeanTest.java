@@ -0,0 +1,188 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import net.wasdev.samples.microProfile.occasions.Notification;
+import net.wasdev.samples.microProfile.occasions.NotificationRetryBean;
+import net.wasdev.samples.microProfile.occasions.OccasionResponse;
+import net.wasdev.samples.microProfile.occasions.Orchestrator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class NotificationRetryBeanTest {
+
+  private static final String BATCH_URL = "http://notification/batch";
+  private static final String BATCH_11_URL = "http://notification_v1_1/batch";
+
+  private Orchestrator orchestrator;
+  private List<Notification> notifications;
+
+  @Before
+  public void setUp() {
+    orchestrator = Mockito.mock(Orchestrator.class);
+    notifications = new ArrayList<Notification>();
+    for (int i = 0; i < 3; i++) {
+      notifications.add(new Notification("occasion" + i, "message" + i, "@handle" + i));
+    }
+  }
+
+  /**
+   * Only the notifications that failed on the server side should be sent again, and a notification
+   * that was rejected should not be sent again.
+   */
+  @Test
+  public void testRetryOnlyFailed() throws Exception {
+    doReturn(results(200, 500, 400))
+        .doReturn(results(200))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_URL), anyString(), anyString());
+
+    List<OccasionResponse> responses = send();
+
+    assertEquals(Arrays.asList(200, 200, 400), statuses(responses));
+    assertEquals(OccasionResponse.NOTIFICATION_TYPE_LOG, responses.get(1).getNotificationType());
+    assertEquals(OccasionResponse.NOTIFICATION_TYPE_ERROR, responses.get(2).getNotificationType());
+    assertEquals(
+        Arrays.asList(Arrays.asList("message0", "message1", "message2"), Arrays.asList("message1")),
+        sentMessages(BATCH_URL, 2));
+  }
+
+  /**
+   * A notification that fails every retry should be sent to be tweeted, without the ones that were
+   * logged.
+   */
+  @Test
+  public void testFallbackOnlyFailed() throws Exception {
+    doReturn(results(200, 503, 200))
+        .doReturn(results(503))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_URL), anyString(), anyString());
+    doReturn(results(200))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_11_URL), anyString(), anyString());
+
+    List<OccasionResponse> responses = send();
+
+    assertEquals(Arrays.asList(200, 200, 200), statuses(responses));
+    assertEquals(OccasionResponse.NOTIFICATION_TYPE_TWEET, responses.get(1).getNotificationType());
+    assertEquals(Arrays.asList(Arrays.asList("message1")), sentMessages(BATCH_11_URL, 1));
+    assertEquals(Arrays.asList("message1"), sentMessages(BATCH_URL, 3).get(2));
+  }
+
+  /** If a whole batch fails, all of it should be sent again. */
+  @Test
+  public void testRetryWholeBatch() throws Exception {
+    doThrow(new IOException("Connection refused"))
+        .doReturn(results(200, 200, 200))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_URL), anyString(), anyString());
+
+    List<OccasionResponse> responses = send();
+
+    assertEquals(Arrays.asList(200, 200, 200), statuses(responses));
+    assertEquals(3, sentMessages(BATCH_URL, 2).get(1).size());
+  }
+
+  /**
+   * If the notification service cannot be reached or does not answer in time, the batch should be
+   * retried and then sent to be tweeted.
+   */
+  @Test
+  public void testFallbackWhenUnreachable() throws Exception {
+    doThrow(new ProcessingException(new SocketTimeoutException("Read timed out")))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_URL), anyString(), anyString());
+    doReturn(results(200, 200, 200))
+        .when(orchestrator)
+        .makeConnection(eq("POST"), eq(BATCH_11_URL), anyString(), anyString());
+
+    List<OccasionResponse> responses = send();
+
+    assertEquals(Arrays.asList(200, 200, 200), statuses(responses));
+    for (OccasionResponse response : responses) {
+      assertEquals(OccasionResponse.NOTIFICATION_TYPE_TWEET, response.getNotificationType());
+    }
+    assertEquals(3, sentMessages(BATCH_URL, 3).get(2).size());
+    assertEquals(
+        Arrays.asList(Arrays.asList("message0", "message1", "message2")),
+        sentMessages(BATCH_11_URL, 1));
+  }
+
+  private List<OccasionResponse> send() {
+    return new NotificationRetryBean()
+        .makeBatchNotificationConnection(
+            notifications, orchestrator, "jwt", BATCH_11_URL, BATCH_URL);
+  }
+
+  /** The messages in each batch that was sent to a URL. */
+  private List<List<String>> sentMessages(String url, int batches) throws IOException {
+    ArgumentCaptor<String> payloads = ArgumentCaptor.forClass(String.class);
+    verify(orchestrator, times(batches))
+        .makeConnection(eq("POST"), eq(url), payloads.capture(), anyString());
+
+    List<List<String>> sent = new ArrayList<List<String>>();
+    for (String payload : payloads.getAllValues()) {
+      List<String> messages = new ArrayList<String>();
+      JsonObject batch = Json.createReader(new StringReader(payload)).readObject();
+      for (JsonValue item : batch.getJsonArray("notifications")) {
+        JsonValue notification = ((JsonObject) item).get("notification");
+        messages.add(
+            notification instanceof JsonObject
+                ? ((JsonObject) notification).getString("message")
+                : ((JsonString) notification).getString());
+      }
+      sent.add(messages);
+    }
+    return sent;
+  }
+
+  private static List<Integer> statuses(List<OccasionResponse> responses) {
+    List<Integer> statuses = new ArrayList<Integer>();
+    for (OccasionResponse response : responses) {
+      statuses.add(response.getNotificationResponse().getStatus());
+    }
+    return statuses;
+  }
+
+  /** A batch response with a result of each status. */
+  private static Response results(int... statuses) {
+    JsonArrayBuilder results = Json.createArrayBuilder();
+    for (int status : statuses) {
+      results.add(Json.createObjectBuilder().add("status", status));
+    }
+    return Response.ok()
+        .entity(Json.createObjectBuilder().add("results", results).build().toString())
+        .build();
+  }
+}
@@ -0,0 +1,75 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import net.wasdev.samples.microProfile.occasions.NotificationTime;
+import org.junit.Test;
+
+public class NotificationTimeTest {
+
+  /** Occasions should be notified at the configured time, in the configured zone. */
+  @Test
+  public void testConfiguredTimeAndZone() {
+    NotificationTime notificationTime = NotificationTime.parse("09:30", "America/New_York", "");
+
+    // New York is on daylight saving time in July, and not in January.
+    assertEquals(
+        millis("2117-07-31T13:30:00Z"), notificationTime.getNotifyAtMillis("2117-07-31", "0001"));
+    assertEquals(
+        millis("2117-01-31T14:30:00Z"), notificationTime.getNotifyAtMillis("2117-01-31", "0001"));
+  }
+
+  /** A group with its own zone should be notified in that zone. */
+  @Test
+  public void testGroupZone() {
+    NotificationTime notificationTime =
+        NotificationTime.parse("", "UTC", "0001=Asia/Tokyo, 0002 = Europe/Paris");
+
+    assertEquals(
+        millis("2117-07-30T23:00:00Z"), notificationTime.getNotifyAtMillis("2117-07-31", "0001"));
+    assertEquals(
+        millis("2117-07-31T06:00:00Z"), notificationTime.getNotifyAtMillis("2117-07-31", "0002"));
+    assertEquals(
+        millis("2117-07-31T08:00:00Z"), notificationTime.getNotifyAtMillis("2117-07-31", "0003"));
+  }
+
+  /** The start of a day should be in the configured zone. */
+  @Test
+  public void testStartOfDay() {
+    NotificationTime notificationTime = NotificationTime.parse("", "Asia/Tokyo", null);
+
+    assertEquals(
+        millis("2117-07-30T15:00:00Z"),
+        notificationTime.getStartOfDayMillis(LocalDate.of(2117, 7, 31)));
+    assertEquals(LocalDate.now(ZoneId.of("Asia/Tokyo")), notificationTime.today());
+  }
+
+  /** Dates that are not yyyy-MM-dd, or not real dates, should be rejected. */
+  @Test(expected = DateTimeParseException.class)
+  public void testInvalidDate() {
+    NotificationTime.parse(null, "UTC", null).getNotifyAtMillis("2117-02-30", "0001");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidGroupZone() {
+    NotificationTime.parse(null, "UTC", "0001");
+  }
+
+  private long millis(String instant) {
+    return ZonedDateTime.parse(instant).toInstant().toEpochMilli();
+  }
+}
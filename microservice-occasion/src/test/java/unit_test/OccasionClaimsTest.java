@@ -0,0 +1,89 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import java.util.Date;
+import net.wasdev.samples.microProfile.occasions.MongoAccess;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.OccasionClaims;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class OccasionClaimsTest {
+
+  private DBCollection collection;
+  private OccasionClaims claims;
+  private Occasion occasion;
+
+  @Before
+  public void setUp() {
+    collection = Mockito.mock(DBCollection.class);
+    DB db = Mockito.mock(DB.class);
+    MongoAccess mongo = Mockito.mock(MongoAccess.class);
+    doReturn(db).when(mongo).getMongoDB();
+    doReturn(collection).when(db).getCollection("occasions");
+
+    claims = new OccasionClaims();
+    claims.setMongoAccess(mongo);
+    claims.setLeaseMinutes(5);
+
+    occasion =
+        new Occasion(new ObjectId(), "2017-10-25", "group", null, "name", null, "user", null);
+  }
+
+  /** The replica whose findAndModify matches the occasion wins the claim. */
+  @Test
+  public void testClaimWon() {
+    doReturn(new BasicDBObject())
+        .when(collection)
+        .findAndModify(any(DBObject.class), any(DBObject.class));
+
+    long before = System.currentTimeMillis();
+    assertTrue(claims.claim(occasion));
+
+    ArgumentCaptor<DBObject> query = ArgumentCaptor.forClass(DBObject.class);
+    ArgumentCaptor<DBObject> update = ArgumentCaptor.forClass(DBObject.class);
+    verify(collection).findAndModify(query.capture(), update.capture());
+
+    // Only an unclaimed or expired occasion on the scheduled date can be claimed.
+    assertEquals(occasion.getId(), query.getValue().get(Occasion.OCCASION_ID_KEY));
+    assertEquals("2017-10-25", query.getValue().get(Occasion.OCCASION_DATE_KEY));
+    assertNotNull(query.getValue().get("$or"));
+
+    // The claim is held by this replica for the length of the lease.
+    DBObject set = (DBObject) update.getValue().get("$set");
+    assertEquals(claims.getNodeId(), set.get(OccasionClaims.OCCASION_CLAIMED_BY_KEY));
+    Date leaseUntil = (Date) set.get(OccasionClaims.OCCASION_LEASE_UNTIL_KEY);
+    assertTrue(leaseUntil.getTime() >= before + claims.getLeaseMillis());
+  }
+
+  /** When another replica holds the claim, the query matches nothing. */
+  @Test
+  public void testClaimLost() {
+    doReturn(null).when(collection).findAndModify(any(DBObject.class), any(DBObject.class));
+    assertFalse(claims.claim(occasion));
+  }
+}
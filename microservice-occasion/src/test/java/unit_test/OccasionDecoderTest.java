@@ -0,0 +1,126 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import net.wasdev.samples.microProfile.occasions.OccasionDecoder;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+public class OccasionDecoderTest {
+
+  /** An occasion should decode to the same values that it was stored with. */
+  @Test
+  public void testDecode() {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    contributions.add(new Contribution("0001", 20));
+    contributions.add(new Contribution("0002", 50.5));
+    Occasion expected =
+        new Occasion(
+            new ObjectId(),
+            "2017-10-25",
+            "0001",
+            "annual",
+            "John Doe's Birthday",
+            "0001",
+            "0004",
+            contributions);
+
+    Occasion decoded = decode(expected.toDbo());
+
+    assertEquals(expected.toString(), decoded.toString());
+  }
+
+  /** The time to notify the occasion, which is not part of its JSON, should be decoded too. */
+  @Test
+  public void testNotifyAt() {
+    Occasion expected =
+        new Occasion(new ObjectId(), "2017-10-25", "0001", "annual", "Name", "0001", "0004", null);
+    expected.setNotifyAt(1508918400000L);
+
+    assertEquals(expected.getNotifyAt(), decode(expected.toDbo()).getNotifyAt());
+    assertEquals(expected.getNotifyAt(), new Occasion(expected.toDbo()).getNotifyAt());
+    assertNull(new Occasion(expected.toJson()).getNotifyAt());
+  }
+
+  /**
+   * Fields that an occasion does not have should be skipped, even when they hold nested documents
+   * and arrays, and an amount that was stored as an integer should still be read.
+   */
+  @Test
+  public void testUnknownFields() {
+    BasicDBList contributions = new BasicDBList();
+    contributions.add(
+        new BasicDBObject(Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY, "0001")
+            .append(Occasion.OCCASION_CONTRIBUTION_AMOUNT_KEY, 20)
+            .append("notes", new BasicDBObject("text", "Happy birthday")));
+    BasicDBList tags = new BasicDBList();
+    tags.add(new BasicDBObject(Occasion.OCCASION_CONTRIBUTION_USER_ID_KEY, "0009"));
+    BasicDBObject dbo =
+        new BasicDBObject(Occasion.OCCASION_ID_KEY, new ObjectId())
+            .append(Occasion.OCCASION_NAME_KEY, "John Doe's Birthday")
+            .append("leaseUntil", new Date())
+            .append("tags", tags)
+            .append("claim", new BasicDBObject(Occasion.OCCASION_NAME_KEY, "not the name"))
+            .append(Occasion.OCCASION_CONTRIBUTIONS_KEY, contributions);
+
+    Occasion decoded = decode(dbo);
+
+    assertEquals("John Doe's Birthday", decoded.getName());
+    assertEquals("", decoded.getDate());
+    assertEquals(1, decoded.getContributions().size());
+    assertEquals("0001", decoded.getContributions().get(0).getUserId());
+    assertEquals(20, decoded.getContributions().get(0).getAmount(), 0);
+  }
+
+  /** A document that only holds some of the fields, as a projection returns, should decode. */
+  @Test
+  public void testProjection() {
+    Occasion decoded = decode(new BasicDBObject(Occasion.OCCASION_DATE_KEY, "2017-10-25"));
+
+    assertNull(decoded.getId());
+    assertEquals("2017-10-25", decoded.getDate());
+    assertEquals("", decoded.getName());
+    assertTrue(decoded.getContributions().isEmpty());
+  }
+
+  /** An error document from a failed query should keep the fields the driver reports. */
+  @Test
+  public void testErrorDocument() {
+    DBObject decoded =
+        new OccasionDecoder()
+            .decode(
+                new DefaultDBEncoder()
+                    .encode(new BasicDBObject("$err", "query failed").append("code", 17287)),
+                (DBCollection) null);
+
+    assertEquals("query failed", decoded.get("$err"));
+    assertEquals(17287, decoded.get("code"));
+  }
+
+  private Occasion decode(DBObject dbo) {
+    byte[] bson = new DefaultDBEncoder().encode(dbo);
+    return OccasionDecoder.toOccasion(new OccasionDecoder().decode(bson, (DBCollection) null));
+  }
+}
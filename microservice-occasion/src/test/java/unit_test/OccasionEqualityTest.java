@@ -0,0 +1,86 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+public class OccasionEqualityTest {
+
+  /** Equal contributions should have equal hash codes, and a null or other object is not equal. */
+  @Test
+  public void testContributionEquality() {
+    Contribution contribution = new Contribution("0001", 20);
+
+    assertEquals(contribution, new Contribution("0001", 20));
+    assertEquals(contribution.hashCode(), new Contribution("0001", 20).hashCode());
+    assertNotEquals(contribution, new Contribution("0001", 21));
+    assertNotEquals(contribution, new Contribution("0002", 20));
+    assertFalse(contribution.equals(null));
+    assertFalse(contribution.equals("0001"));
+  }
+
+  /** Lists with the same contributions should be equal in any order, and only then. */
+  @Test
+  public void testListsEqual() {
+    Contribution a = new Contribution("0001", 20);
+    Contribution b = new Contribution("0002", 30);
+
+    assertTrue(Contribution.listsEqual(Arrays.asList(a, b), Arrays.asList(b, a)));
+    assertEquals(
+        Contribution.listHashCode(Arrays.asList(a, b)),
+        Contribution.listHashCode(Arrays.asList(b, a)));
+    assertTrue(Contribution.listsEqual(null, Collections.<Contribution>emptyList()));
+    assertFalse(Contribution.listsEqual(Arrays.asList(a, b), Arrays.asList(a)));
+    assertFalse(Contribution.listsEqual(Arrays.asList(a, a, b), Arrays.asList(a, b, b)));
+  }
+
+  /**
+   * Stored occasions should be equal when their IDs are, and new occasions when their fields are. A
+   * stored occasion is never equal to a new one.
+   */
+  @Test
+  public void testOccasionEquality() {
+    ObjectId id = new ObjectId();
+    Occasion stored = occasion(id, "John Doe's Birthday", "0001", "0002");
+    Occasion renamed = occasion(id, "Johnny's Birthday", "0001", "0002");
+    Occasion unsaved = occasion(null, "John Doe's Birthday", "0001", "0002");
+    Occasion reordered = occasion(null, "John Doe's Birthday", "0002", "0001");
+
+    assertEquals(stored, renamed);
+    assertEquals(stored.hashCode(), renamed.hashCode());
+    assertEquals(unsaved, reordered);
+    assertEquals(unsaved.hashCode(), reordered.hashCode());
+    assertNotEquals(stored, unsaved);
+    assertNotEquals(unsaved, stored);
+    assertNotEquals(unsaved, occasion(null, "Johnny's Birthday", "0001", "0002"));
+    assertFalse(stored.equals(null));
+  }
+
+  private Occasion occasion(ObjectId id, String name, String... contributors) {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    for (String contributor : contributors) {
+      contributions.add(new Contribution(contributor, 20));
+    }
+    return new Occasion(id, "2017-10-25", "0001", "annual", name, "0001", "0004", contributions);
+  }
+}
@@ -0,0 +1,256 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.wasdev.samples.microProfile.occasions.MongoAccess;
+import net.wasdev.samples.microProfile.occasions.NotificationTime;
+import net.wasdev.samples.microProfile.occasions.Occasion;
+import net.wasdev.samples.microProfile.occasions.Occasion.Contribution;
+import net.wasdev.samples.microProfile.occasions.OccasionClaims;
+import net.wasdev.samples.microProfile.occasions.OccasionRecurrence;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class OccasionRecurrenceTest {
+
+  private static final NotificationTime UTC_8AM =
+      new NotificationTime(
+          LocalTime.of(8, 0), ZoneOffset.UTC, Collections.<String, ZoneId>emptyMap());
+
+  private DBCollection collection;
+  private DBCollection history;
+  private OccasionRecurrence recurrence;
+
+  @Before
+  public void setUp() {
+    collection = Mockito.mock(DBCollection.class);
+    history = Mockito.mock(DBCollection.class);
+    DB db = Mockito.mock(DB.class);
+    MongoAccess mongo = Mockito.mock(MongoAccess.class);
+    doReturn(db).when(mongo).getMongoDB();
+    doReturn(collection).when(db).getCollection("occasions");
+    doReturn(history).when(db).getCollection(OccasionRecurrence.HISTORY_COLLECTION);
+
+    recurrence = new OccasionRecurrence();
+    recurrence.setMongoAccess(mongo);
+  }
+
+  /** Each interval moves the date on by its own amount, and unknown intervals don't recur. */
+  @Test
+  public void testNextDate() {
+    LocalDate date = LocalDate.of(2017, 10, 25);
+    assertEquals(LocalDate.of(2018, 10, 25), OccasionRecurrence.nextDate(date, "annual"));
+    assertEquals(LocalDate.of(2018, 10, 25), OccasionRecurrence.nextDate(date, "Yearly"));
+    assertEquals(LocalDate.of(2017, 11, 25), OccasionRecurrence.nextDate(date, "monthly"));
+    assertEquals(LocalDate.of(2017, 11, 1), OccasionRecurrence.nextDate(date, "weekly"));
+    assertEquals(LocalDate.of(2017, 10, 26), OccasionRecurrence.nextDate(date, "daily"));
+    assertNull(OccasionRecurrence.nextDate(date, "once"));
+    assertNull(OccasionRecurrence.nextDate(date, null));
+
+    assertTrue(OccasionRecurrence.recurs("annual"));
+    assertFalse(OccasionRecurrence.recurs(""));
+
+    // The end of a longer month moves to the end of the shorter one.
+    assertEquals(
+        LocalDate.of(2017, 2, 28),
+        OccasionRecurrence.nextDate(LocalDate.of(2016, 2, 29), "annual"));
+    assertEquals(
+        LocalDate.of(2018, 2, 28),
+        OccasionRecurrence.nextDate(LocalDate.of(2018, 1, 31), "monthly"));
+  }
+
+  /** Occurrences that were already due are skipped. */
+  @Test
+  public void testNextOccurrenceSkipsMissed() {
+    Occasion occasion = occasion("2015-10-25", "annual", null);
+    long after = UTC_8AM.getNotifyAtMillis("2017-10-25", null);
+    assertEquals(
+        LocalDate.of(2018, 10, 25), OccasionRecurrence.nextOccurrence(occasion, UTC_8AM, after));
+    assertEquals(
+        LocalDate.of(2017, 10, 25),
+        OccasionRecurrence.nextOccurrence(occasion, UTC_8AM, after - 1));
+
+    // Missed occurrences are skipped a whole number of months from the date of the occasion.
+    Occasion monthly = occasion("2017-01-31", "monthly", null);
+    assertEquals(
+        LocalDate.of(2017, 3, 31),
+        OccasionRecurrence.nextOccurrence(
+            monthly, UTC_8AM, UTC_8AM.getNotifyAtMillis("2017-03-30", null)));
+  }
+
+  /** A monthly occasion on the 31st comes back to the 31st after a shorter month. */
+  @Test
+  public void testMonthlyOnThe31st() {
+    assertArrayEquals(
+        new String[] {"2017-02-28", "2017-03-31", "2017-04-30", "2017-05-31"},
+        occurrences(occasion("2017-01-31", "monthly", null), 4));
+  }
+
+  /** A yearly occasion on February 29th comes back to February 29th in the next leap year. */
+  @Test
+  public void testYearlyOnFebruary29th() {
+    assertArrayEquals(
+        new String[] {"2017-02-28", "2018-02-28", "2019-02-28", "2020-02-29", "2021-02-28"},
+        occurrences(occasion("2016-02-29", "annual", null), 5));
+  }
+
+  /** An occasion whose date was changed starts again from its new date. */
+  @Test
+  public void testAnchorDateAfterDateChange() {
+    Occasion occasion = occasion("2017-06-15", "monthly", null);
+    occasion.setAnchorDate("2017-01-31");
+    assertEquals(
+        LocalDate.of(2017, 7, 15),
+        OccasionRecurrence.nextOccurrence(
+            occasion, UTC_8AM, UTC_8AM.getNotifyAtMillis("2017-06-15", null)));
+  }
+
+  /**
+   * The occasion is moved on in one update, and the contributions it had are recorded in the
+   * history.
+   */
+  @Test
+  public void testRecur() {
+    List<Contribution> contributions = new ArrayList<Contribution>();
+    contributions.add(new Contribution("user1", 10.25));
+    contributions.add(new Contribution("user2", 5));
+    Occasion occasion = occasion("2017-10-25", "annual", contributions);
+    doReturn(occasion.toDbo())
+        .when(collection)
+        .findAndModify(
+            any(DBObject.class),
+            any(DBObject.class),
+            any(DBObject.class),
+            anyBoolean(),
+            any(DBObject.class),
+            anyBoolean(),
+            anyBoolean());
+
+    LocalDate expected = OccasionRecurrence.nextOccurrence(occasion, UTC_8AM, now());
+    Occasion next = recurrence.recur(occasion, UTC_8AM);
+    assertNotNull(next);
+    assertEquals(expected.toString(), next.getDate());
+    assertEquals(Long.valueOf(UTC_8AM.getNotifyAtMillis(expected, null)), next.getNotifyAt());
+    assertTrue(next.getContributions().isEmpty());
+    assertEquals(0, next.getContributionTotalCents());
+    assertEquals(occasion.getId(), next.getId());
+
+    ArgumentCaptor<DBObject> query = ArgumentCaptor.forClass(DBObject.class);
+    ArgumentCaptor<DBObject> update = ArgumentCaptor.forClass(DBObject.class);
+    verify(collection)
+        .findAndModify(
+            query.capture(),
+            any(DBObject.class),
+            any(DBObject.class),
+            eq(false),
+            update.capture(),
+            eq(false),
+            eq(false));
+
+    // Only the occasion on the date that was notified is moved on.
+    assertEquals(occasion.getId(), query.getValue().get(Occasion.OCCASION_ID_KEY));
+    assertEquals("2017-10-25", query.getValue().get(Occasion.OCCASION_DATE_KEY));
+
+    DBObject set = (DBObject) update.getValue().get("$set");
+    assertEquals(expected.toString(), set.get(Occasion.OCCASION_DATE_KEY));
+    assertEquals(next.getNotifyAt(), set.get(Occasion.OCCASION_NOTIFY_AT_KEY));
+    assertEquals("2017-10-25", set.get(Occasion.OCCASION_ANCHOR_DATE_KEY));
+    assertEquals("2017-10-25", next.getAnchorDate());
+    DBObject unset = (DBObject) update.getValue().get("$unset");
+    assertTrue(unset.containsField(Occasion.OCCASION_CONTRIBUTIONS_KEY));
+    assertEquals(0L, set.get(Occasion.OCCASION_CONTRIBUTION_TOTAL_CENTS_KEY));
+    assertTrue(unset.containsField(OccasionClaims.OCCASION_CLAIMED_BY_KEY));
+    assertTrue(unset.containsField(OccasionClaims.OCCASION_LEASE_UNTIL_KEY));
+
+    // The run is recorded under an ID of its own, so recording it again replaces it.
+    ArgumentCaptor<DBObject> historyQuery = ArgumentCaptor.forClass(DBObject.class);
+    ArgumentCaptor<DBObject> record = ArgumentCaptor.forClass(DBObject.class);
+    verify(history).update(historyQuery.capture(), record.capture(), eq(true), eq(false));
+    String historyId = occasion.getId() + "/2017-10-25";
+    assertEquals(historyId, historyQuery.getValue().get(Occasion.OCCASION_ID_KEY));
+    assertEquals(historyId, record.getValue().get(Occasion.OCCASION_ID_KEY));
+    assertEquals(
+        occasion.getId(), record.getValue().get(OccasionRecurrence.HISTORY_OCCASION_ID_KEY));
+    assertEquals(2, record.getValue().get(OccasionRecurrence.HISTORY_CONTRIBUTION_COUNT_KEY));
+    assertEquals(
+        1525L, record.getValue().get(OccasionRecurrence.HISTORY_CONTRIBUTION_TOTAL_CENTS_KEY));
+  }
+
+  /** An occasion that was changed or removed since it was notified is left alone. */
+  @Test
+  public void testRecurChanged() {
+    doReturn(null)
+        .when(collection)
+        .findAndModify(
+            any(DBObject.class),
+            any(DBObject.class),
+            any(DBObject.class),
+            anyBoolean(),
+            any(DBObject.class),
+            anyBoolean(),
+            anyBoolean());
+
+    assertNull(recurrence.recur(occasion("2017-10-25", "annual", null), UTC_8AM));
+    verify(history, never())
+        .update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean());
+  }
+
+  private static Occasion occasion(String date, String interval, List<Contribution> contributions) {
+    return new Occasion(
+        new ObjectId(), date, "group", interval, "name", "recipient", "user", contributions);
+  }
+
+  /**
+   * Move an occasion on the given number of times, as {@link OccasionRecurrence#recur} does, each
+   * time just after it is notified.
+   */
+  private static String[] occurrences(Occasion occasion, int count) {
+    String[] dates = new String[count];
+    String anchorDate = occasion.getDate();
+    for (int i = 0; i < count; i++) {
+      long notifiedAt = UTC_8AM.getNotifyAtMillis(occasion.getDate(), null);
+      occasion.setDate(OccasionRecurrence.nextOccurrence(occasion, UTC_8AM, notifiedAt).toString());
+      occasion.setAnchorDate(anchorDate);
+      dates[i] = occasion.getDate();
+    }
+    return dates;
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+}
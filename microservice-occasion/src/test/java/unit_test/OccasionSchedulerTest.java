@@ -0,0 +1,172 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package unit_test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.wasdev.samples.microProfile.occasions.OccasionScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OccasionSchedulerTest {
+
+  private OccasionScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new OccasionScheduler(4);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  /** Occasions that are due at the same time should run on more than one thread. */
+  @Test
+  public void testDueOccasionsRunInParallel() throws Exception {
+    int shardCount = scheduler.getShardCount();
+    final CountDownLatch started = new CountDownLatch(shardCount);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    // Pick one occasion ID for each shard, and block each one until all have started.
+    for (int shard = 0; shard < shardCount; shard++) {
+      scheduler.schedule(
+          idForShard(shard, shardCount),
+          0,
+          () -> {
+            started.countDown();
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+              Thread.currentThread().interrupt();
+            }
+          });
+    }
+
+    assertTrue(
+        "The shards did not run the due occasions at the same time",
+        started.await(10, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  /** A cancelled occasion should never run. */
+  @Test
+  public void testCancel() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    scheduler.schedule("cancelled", inOneHour(), () -> runs.incrementAndGet());
+    assertEquals(1, scheduler.getPendingCount());
+    assertTrue(scheduler.isScheduled("cancelled"));
+
+    assertTrue(scheduler.cancel("cancelled"));
+    assertFalse(scheduler.cancel("cancelled"));
+    assertFalse(scheduler.isScheduled("cancelled"));
+    assertEquals(0, scheduler.getPendingCount());
+    assertEquals(0, scheduler.getBucketCount());
+    assertEquals(0, runs.get());
+  }
+
+  /** Scheduling an occasion again should replace the earlier schedule. */
+  @Test
+  public void testReschedule() throws Exception {
+    final AtomicInteger firstRuns = new AtomicInteger();
+    final CountDownLatch secondRun = new CountDownLatch(1);
+
+    scheduler.schedule("occasion", inOneHour(), () -> firstRuns.incrementAndGet());
+    scheduler.schedule("occasion", 0, () -> secondRun.countDown());
+
+    assertTrue(secondRun.await(10, TimeUnit.SECONDS));
+    assertEquals(0, firstRuns.get());
+    assertEquals(0, scheduler.getPendingCount());
+  }
+
+  /** Replacing the task of a pending occasion should keep its due time, and run the new task. */
+  @Test
+  public void testReplace() throws Exception {
+    final AtomicInteger firstRuns = new AtomicInteger();
+    final CountDownLatch secondRun = new CountDownLatch(1);
+
+    scheduler.schedule(
+        "occasion", System.currentTimeMillis() + 200, () -> firstRuns.incrementAndGet());
+    assertTrue(scheduler.replace("occasion", () -> secondRun.countDown()));
+    assertEquals(1, scheduler.getPendingCount());
+    assertEquals(1, scheduler.getBucketCount());
+
+    assertTrue(secondRun.await(10, TimeUnit.SECONDS));
+    assertEquals(0, firstRuns.get());
+
+    // An occasion that is not pending should not be scheduled by a replace.
+    assertFalse(scheduler.replace("unscheduled", () -> {}));
+    assertEquals(0, scheduler.getPendingCount());
+  }
+
+  /**
+   * Scheduling an occasion again for the time it is already due should swap its task in place, and
+   * be counted.
+   */
+  @Test
+  public void testRescheduleSameTime() throws Exception {
+    final AtomicInteger firstRuns = new AtomicInteger();
+    final CountDownLatch secondRun = new CountDownLatch(1);
+    long due = System.currentTimeMillis() + 200;
+
+    scheduler.schedule("occasion", due, () -> firstRuns.incrementAndGet());
+    scheduler.schedule("occasion", due, () -> secondRun.countDown());
+    assertEquals(1, scheduler.getUnchangedRescheduleCount());
+    assertEquals(1, scheduler.getPendingCount());
+    assertEquals(1, scheduler.getBucketCount());
+
+    assertTrue(secondRun.await(10, TimeUnit.SECONDS));
+    assertEquals(0, firstRuns.get());
+
+    // Moving it to another time is a real reschedule.
+    scheduler.schedule("other", inOneHour(), () -> {});
+    scheduler.schedule("other", inOneHour() + 1000, () -> {});
+    assertEquals(1, scheduler.getUnchangedRescheduleCount());
+  }
+
+  /** Occasions that are due at the same time should share one bucket. */
+  @Test
+  public void testSameDueTimeSharesBucket() throws Exception {
+    long due = inOneHour();
+    for (int i = 0; i < 1000; i++) {
+      scheduler.schedule("occasion" + i, due, () -> {});
+    }
+    scheduler.schedule("later", due + TimeUnit.DAYS.toMillis(1), () -> {});
+    assertEquals(1001, scheduler.getPendingCount());
+    assertEquals(2, scheduler.getBucketCount());
+
+    // Moving the only occasion out of a bucket should remove the bucket.
+    scheduler.schedule("later", due, () -> {});
+    assertEquals(1001, scheduler.getPendingCount());
+    assertEquals(1, scheduler.getBucketCount());
+  }
+
+  private long inOneHour() {
+    return System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+  }
+
+  /** Find an ID that hashes to the given shard. */
+  private String idForShard(int shard, int shardCount) {
+    for (int i = 0; ; i++) {
+      String id = "occasion" + i;
+      if (Math.floorMod(id.hashCode(), shardCount) == shard) {
+        return id;
+      }
+    }
+  }
+}
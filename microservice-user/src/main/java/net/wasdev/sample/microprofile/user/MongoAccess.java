@@ -10,48 +10,28 @@
 // ******************************************************************************
 package net.wasdev.sample.microprofile.user;
 
-import com.mongodb.DB;
-import com.mongodb.MongoClient;
-import java.net.UnknownHostException;
+import com.mongodb.BasicDBObject;
 import javax.enterprise.context.ApplicationScoped;
-import javax.inject.Inject;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
+import net.wasdev.samples.microprofile.mongo.AbstractMongoAccess;
+import net.wasdev.samples.microprofile.mongo.IndexReconciler;
 
 /** Holds the MongoDB instance that the JAX-RS resources will use. */
 @ApplicationScoped
-public class MongoAccess {
-  /**
-   * The mongoDB hostname is injected by MP Config. The hostname is defined in the project's POM,
-   * and copied into Liberty's bootstrap.properties during the Maven build. bootstrap.properties is
-   * a pre-configured config source for MP Config.
-   */
-  @Inject
-  @ConfigProperty(name = "mongo.hostname")
-  private String mongoHostname;
+public class MongoAccess extends AbstractMongoAccess {
+
+  public MongoAccess() {
+    super("gifts-user");
+  }
 
   /**
-   * The mongoDB port is injected by MP Config. The port is defined in the proejct's POM, and copied
-   * into Liberty's bootstrap.properties during the Maven build. bootstrap.properties is a
-   * pre-configured config source for MP Config.
+   * Users are looked up by user name when they log in, and no two users can have the same user
+   * name.
    */
-  @Inject
-  @ConfigProperty(name = "mongo.port")
-  private int mongoPort;
-
-  /** Cached Mongo DB reference used by all threads. */
-  private DB database = null;
-
-  /** Get a connection to Mongo. */
-  public synchronized DB getMongoDB() {
-    if (database == null) {
-      try {
-        MongoClient client = new MongoClient(mongoHostname, mongoPort);
-        database = client.getDB("gifts-user");
-      } catch (UnknownHostException uhe) {
-        throw new RuntimeException(uhe);
-      }
-    }
-
-    return database;
+  @Override
+  protected void declareIndexes(IndexReconciler reconciler) {
+    reconciler.declare(
+        User.DB_COLLECTION_NAME,
+        new BasicDBObject(User.JSON_KEY_USER_NAME, 1),
+        new BasicDBObject("unique", true));
   }
 }
@@ -0,0 +1,112 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.sample.microprofile.user;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Tells the occasion service that a user has changed, so that it stops using its cached copy.
+ *
+ * <p>The occasion service caches the users it looks up when it sends notifications. This is a best
+ * effort: the call is made in the background, and if it fails the cached copy expires on its own.
+ *
+ * <p>The call goes to one replica of the occasion service. When there are several, as behind a
+ * Kubernetes service, only the replica that gets the call drops its copy, and the others go on
+ * using theirs until it expires. How stale a user can be is bounded by the time the occasion
+ * service keeps a lookup, orchestrator.lookup.cache.ttl.seconds, 300 seconds by default.
+ */
+@ApplicationScoped
+public class OccasionCacheInvalidator {
+  private static final String clazz = OccasionCacheInvalidator.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /**
+   * The URL of the occasion service. When it is not set, or is not an absolute URL (such as the
+   * path the front end reaches the service on), nothing is invalidated.
+   */
+  @Inject
+  @ConfigProperty(name = "occasion.service.url", defaultValue = "")
+  private String occasionServiceUrl;
+
+  /** Makes the calls, one at a time, off the request thread. */
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "occasion-cache-invalidator");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** The client for the calls. Created on first use. */
+  private Client client = null;
+
+  /**
+   * Invalidate a user in the occasion service's cache.
+   *
+   * @param id The ID of the user that changed.
+   * @param authorization The authorization header of the request that changed it.
+   */
+  public void invalidate(final String id, final String authorization) {
+    if (occasionServiceUrl == null
+        || !(occasionServiceUrl.startsWith("https://") || occasionServiceUrl.startsWith("http://"))
+        || authorization == null) {
+      return;
+    }
+
+    executor.execute(
+        () -> {
+          String url = occasionServiceUrl + "/cache/users/" + id;
+          try {
+            Response response =
+                getClient()
+                    .target(url)
+                    .request()
+                    .header(HttpHeaders.AUTHORIZATION, authorization)
+                    .delete();
+            if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+              logger.log(
+                  Level.WARNING,
+                  "Could not invalidate {0}, status {1}",
+                  new Object[] {url, response.getStatus()});
+            }
+            response.close();
+          } catch (Throwable t) {
+            logger.log(Level.WARNING, "Could not invalidate " + url, t);
+          }
+        });
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    executor.shutdownNow();
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private synchronized Client getClient() {
+    if (client == null) {
+      client = ClientBuilder.newClient();
+    }
+    return client;
+  }
+}
@@ -76,6 +76,28 @@ public class User {
     this.isTwitterLogin = (Boolean) user.get(JSON_KEY_USER_TWITTER_LOGIN);
   }
 
+  /** Constructor for a user whose fields were read by {@link UserDecoder}. */
+  User(
+      String id,
+      String firstName,
+      String lastName,
+      String userName,
+      String twitterHandle,
+      String wishListLink,
+      String passwordHash,
+      String passwordSalt,
+      boolean isTwitterLogin) {
+    this.id = id;
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.userName = userName;
+    this.twitterHandle = twitterHandle;
+    this.wishListLink = wishListLink;
+    this.passwordHash = passwordHash;
+    this.passwordSalt = passwordSalt;
+    this.isTwitterLogin = isTwitterLogin;
+  }
+
   /** Constructor for reading the user from the JSON that was a part of a JAX-RS request. */
   public User(JsonObject user) {
     if (user.containsKey(JSON_KEY_USER_ID)) {
@@ -192,6 +214,11 @@ public class User {
     return user.build();
   }
 
+  /** Return a query projection that leaves out the confidential fields (password and salt). */
+  public static DBObject getPublicFieldsProjection() {
+    return new BasicDBObject(JSON_KEY_USER_PASSWORD_HASH, 0).append(JSON_KEY_USER_PASSWORD_SALT, 0);
+  }
+
   /** Return an object suitable to create a new user in MongoDB. */
   public BasicDBObject getDBObject(boolean includeId) {
     BasicDBObject user = new BasicDBObject();
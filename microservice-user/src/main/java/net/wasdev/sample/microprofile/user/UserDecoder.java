@@ -0,0 +1,259 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.sample.microprofile.user;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCallback;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import java.io.IOException;
+import java.io.InputStream;
+import org.bson.BasicBSONDecoder;
+import org.bson.EmptyBSONCallback;
+import org.bson.types.ObjectId;
+
+/**
+ * Decodes user documents straight into {@link User}s.
+ *
+ * <p>The driver's default decoder builds a BasicDBObject for each document, only for User to copy
+ * the fields back out of it. This decoder collects the fields as the BSON is read. Set it on a
+ * cursor with {@code cursor.setDecoderFactory(UserDecoder.FACTORY)}, and get the User from each
+ * document that the cursor returns with {@link #toUser}. Fields that a User does not have are
+ * skipped.
+ */
+public class UserDecoder extends BasicBSONDecoder implements DBDecoder {
+
+  public static final DBDecoderFactory FACTORY = UserDecoder::new;
+
+  /**
+   * Get the user from a document. Documents that were not read with this decoder are converted the
+   * usual way.
+   */
+  public static User toUser(DBObject dbo) {
+    if (dbo instanceof DecodedUser) {
+      return ((DecodedUser) dbo).user;
+    }
+    return new User(dbo);
+  }
+
+  @Override
+  public DBCallback getDBCallback(DBCollection collection) {
+    return new UserCallback();
+  }
+
+  @Override
+  public DBObject decode(byte[] bytes, DBCollection collection) {
+    UserCallback callback = new UserCallback();
+    decode(bytes, callback);
+    return (DBObject) callback.get();
+  }
+
+  @Override
+  public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+    UserCallback callback = new UserCallback();
+    decode(in, callback);
+    return (DBObject) callback.get();
+  }
+
+  /**
+   * The document handed back to the driver. It only carries the user, except when a query fails and
+   * the server returns an error document instead: the error fields are kept, so that the driver can
+   * report the error.
+   */
+  private static class DecodedUser extends BasicDBObject {
+    private static final long serialVersionUID = 1L;
+
+    private transient User user;
+  }
+
+  /** Collects the fields of the user as the decoder reads them. */
+  private static class UserCallback extends EmptyBSONCallback implements DBCallback {
+    /** The nesting level: 1 for the fields of the user. */
+    private int depth = 0;
+
+    private DecodedUser decoded;
+    private String id;
+    private String firstName;
+    private String lastName;
+    private String userName;
+    private String twitterHandle;
+    private String wishListLink;
+    private String passwordHash;
+    private String passwordSalt;
+    private boolean isTwitterLogin;
+
+    @Override
+    public void reset() {
+      depth = 0;
+      decoded = null;
+    }
+
+    @Override
+    public Object get() {
+      return decoded;
+    }
+
+    @Override
+    public void objectStart() {
+      decoded = new DecodedUser();
+      id = null;
+      firstName = null;
+      lastName = null;
+      userName = null;
+      twitterHandle = null;
+      wishListLink = null;
+      passwordHash = null;
+      passwordSalt = null;
+      isTwitterLogin = false;
+      depth = 1;
+    }
+
+    @Override
+    public void objectStart(String name) {
+      depth++;
+    }
+
+    @Override
+    public Object objectDone() {
+      if (depth == 1) {
+        decoded.user =
+            new User(
+                id,
+                firstName,
+                lastName,
+                userName,
+                twitterHandle,
+                wishListLink,
+                passwordHash,
+                passwordSalt,
+                isTwitterLogin);
+      }
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void arrayStart(String name) {
+      depth++;
+    }
+
+    @Override
+    public Object arrayDone() {
+      depth--;
+      return null;
+    }
+
+    @Override
+    public void gotObjectId(String name, ObjectId id) {
+      if (depth == 1 && User.DB_ID.equals(name)) {
+        this.id = id.toString();
+      }
+    }
+
+    @Override
+    public void gotString(String name, String value) {
+      if (depth != 1) {
+        return;
+      }
+      switch (name) {
+        case User.JSON_KEY_USER_FIRST_NAME:
+          firstName = value;
+          break;
+        case User.JSON_KEY_USER_LAST_NAME:
+          lastName = value;
+          break;
+        case User.JSON_KEY_USER_NAME:
+          userName = value;
+          break;
+        case User.JSON_KEY_USER_TWITTER_HANDLE:
+          twitterHandle = value;
+          break;
+        case User.JSON_KEY_USER_WISH_LIST_LINK:
+          wishListLink = value;
+          break;
+        case User.JSON_KEY_USER_PASSWORD_HASH:
+          passwordHash = value;
+          break;
+        case User.JSON_KEY_USER_PASSWORD_SALT:
+          passwordSalt = value;
+          break;
+        case "$err":
+          decoded.put(name, value);
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void gotBoolean(String name, boolean value) {
+      if (depth == 1 && User.JSON_KEY_USER_TWITTER_LOGIN.equals(name)) {
+        isTwitterLogin = value;
+      }
+    }
+
+    @Override
+    public void gotInt(String name, int value) {
+      if (depth == 1 && "code".equals(name)) {
+        decoded.put(name, value);
+      }
+    }
+
+    // The user has no fields of the other types, so they are skipped.
+
+    @Override
+    public void gotNull(String name) {}
+
+    @Override
+    public void gotUndefined(String name) {}
+
+    @Override
+    public void gotMinKey(String name) {}
+
+    @Override
+    public void gotMaxKey(String name) {}
+
+    @Override
+    public void gotDouble(String name, double value) {}
+
+    @Override
+    public void gotLong(String name, long value) {}
+
+    @Override
+    public void gotDate(String name, long millis) {}
+
+    @Override
+    public void gotSymbol(String name, String symbol) {}
+
+    @Override
+    public void gotRegex(String name, String pattern, String flags) {}
+
+    @Override
+    public void gotTimestamp(String name, int time, int increment) {}
+
+    @Override
+    public void gotDBRef(String name, String namespace, ObjectId id) {}
+
+    @Override
+    public void gotBinary(String name, byte type, byte[] data) {}
+
+    @Override
+    public void gotUUID(String name, long part1, long part2) {}
+
+    @Override
+    public void gotCode(String name, String code) {}
+
+    @Override
+    public void gotCodeWScope(String name, String code, Object scope) {}
+  }
+}
@@ -12,20 +12,28 @@ package net.wasdev.sample.microprofile.user;
 
 import com.ibm.websphere.security.jwt.Claims;
 import com.ibm.websphere.security.jwt.JwtBuilder;
+import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.json.Json;
-import javax.json.JsonArrayBuilder;
+import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.json.stream.JsonGenerator;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -34,10 +42,15 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import net.wasdev.samples.microprofile.mongo.DocumentView;
+import net.wasdev.samples.microprofile.mongo.RawDocument;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
@@ -49,6 +62,24 @@ public class UserResource {
   /** Access to MongoDB where we store user data. */
   @Inject private MongoAccess mongo;
 
+  /** The key of the list of user IDs in a lookup request. */
+  private static final String JSON_KEY_IDS = "ids";
+
+  /** The key of the ID to start the next page after. */
+  private static final String JSON_KEY_NEXT = "next";
+
+  /** The most users that can be returned in one page. */
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  /** The most users that can be looked up in one request. */
+  private static final int MAX_LOOKUP_IDS = 1000;
+
+  /** Tells the occasion service when a cached record changes. */
+  @Inject private OccasionCacheInvalidator occasionCacheInvalidator;
+
+  /** The headers of the current request. */
+  @Context private HttpHeaders httpHeaders;
+
   /**
    * The JWT of the current caller. Since this is a request scoped resource, the JWT will be
    * injected for each JAX-RS request. The injection is performed by the mpJwt-1.0 feature.
@@ -132,8 +163,14 @@ public class UserResource {
       return Response.status(Status.BAD_REQUEST).entity("The user already exists.").build();
     }
 
+    // The unique index on the user name catches a user that was added
+    // since we checked.
     BasicDBObject dbEntry = user.getDBObject(false);
-    dbCollection.insert(dbEntry);
+    try {
+      dbCollection.insert(dbEntry);
+    } catch (DuplicateKeyException dke) {
+      return Response.status(Status.BAD_REQUEST).entity("The user already exists.").build();
+    }
     String dbId = dbEntry.getString(User.DB_ID);
 
     // The response will contain the ID of the newly created user.
@@ -201,6 +238,7 @@ public class UserResource {
     // client to change (skip the internal fields).
     DBObject updateObject = new BasicDBObject("$set", newUser.getDBObjectForModify());
     dbCollection.findAndModify(oldDbUser, updateObject);
+    occasionCacheInvalidator.invalidate(id, httpHeaders.getHeaderString(HttpHeaders.AUTHORIZATION));
 
     return Response.ok().build();
   }
@@ -237,6 +275,7 @@ public class UserResource {
     }
 
     dbCollection.remove(new BasicDBObject(User.DB_ID, dbId));
+    occasionCacheInvalidator.invalidate(id, httpHeaders.getHeaderString(HttpHeaders.AUTHORIZATION));
     return Response.ok().build();
   }
 
@@ -265,27 +304,55 @@ public class UserResource {
     // Retrieve the user from the database.
     DB database = mongo.getMongoDB();
     DBCollection dbCollection = database.getCollection(User.DB_COLLECTION_NAME);
-    DBObject user = dbCollection.findOne(new ObjectId(id));
+    RawDocument user =
+        RawDocument.findOne(
+            dbCollection,
+            new BasicDBObject(User.DB_ID, new ObjectId(id)),
+            User.getPublicFieldsProjection());
 
     // If the user did not exist, return an error.  Otherwise, only return the public
-    // fields (exclude things like the password).
+    // fields (exclude things like the password).  The user is written straight from
+    // the BSON, without building a User first.
     if (user == null) {
       return Response.status(Status.BAD_REQUEST).entity("The user not Found.").build();
     }
 
-    JsonObject responsePayload = new User(user).getPublicJsonObject();
+    DocumentView responsePayload =
+        new DocumentView(user)
+            .include(
+                User.DB_ID,
+                User.JSON_KEY_USER_FIRST_NAME,
+                User.JSON_KEY_USER_LAST_NAME,
+                User.JSON_KEY_USER_NAME,
+                User.JSON_KEY_USER_TWITTER_HANDLE,
+                User.JSON_KEY_USER_WISH_LIST_LINK,
+                User.JSON_KEY_USER_TWITTER_LOGIN)
+            .rename(User.DB_ID, User.JSON_KEY_USER_ID);
 
     return Response.ok(responsePayload, MediaType.APPLICATION_JSON).build();
   }
 
   /**
-   * Get all user profiles.
+   * Get all user profiles, or the profiles of a list of users.
    *
-   * @return All user profiles (excluding private fields like password).
+   * @param ids A comma separated list of user IDs, or null to get all users.
+   * @param after If set, only the users after the user with this ID are returned. This is the value
+   *     of "next" from the previous page.
+   * @param limit If greater than zero, the most users to return. When the page is full, the
+   *     response contains a "next" field to pass as "after" to get the next page.
+   * @return The user profiles (excluding private fields like password).
    */
   @GET
   @Produces("application/json")
-  public Response getAllUsers() {
+  public Response getAllUsers(
+      @QueryParam("ids") String ids,
+      @QueryParam("after") String after,
+      @QueryParam("limit") int limit) {
+    // A list of IDs asks for just those users.
+    if (ids != null) {
+      return lookupUsers(Arrays.asList(ids.split(",")));
+    }
+
     // Validate the JWT. The JWT must be in the 'users' group.
     try {
       validateJWT(new HashSet<String>(Arrays.asList("users")));
@@ -296,19 +363,157 @@ public class UserResource {
           .build();
     }
 
-    // Get all the users from the database, and add them to an array.
+    // Start after the last user of the previous page. Since the users are
+    // sorted by ID, this uses the ID index rather than skipping documents.
+    BasicDBObject query = new BasicDBObject();
+    if (after != null) {
+      if (!ObjectId.isValid(after)) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The user ID to start after is not valid.")
+            .build();
+      }
+      query.append(User.DB_ID, new BasicDBObject("$gt", new ObjectId(after)));
+    }
+
+    if (limit < 0 || limit > MAX_PAGE_SIZE) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("The limit must be between 0 and " + MAX_PAGE_SIZE + ".")
+          .build();
+    }
+
+    // Get the users from the database, leaving out all private information.
     DB database = mongo.getMongoDB();
     DBCollection dbCollection = database.getCollection(User.DB_COLLECTION_NAME);
-    DBCursor cursor = dbCollection.find();
-    JsonArrayBuilder userArray = Json.createArrayBuilder();
-    while (cursor.hasNext()) {
-      // Exclude all private information from the list.
-      userArray.add((new User(cursor.next()).getPublicJsonObject()));
+    DBCursor cursor =
+        dbCollection
+            .find(query, User.getPublicFieldsProjection())
+            .sort(new BasicDBObject(User.DB_ID, 1))
+            .setDecoderFactory(UserDecoder.FACTORY);
+    if (limit > 0) {
+      cursor.limit(limit);
     }
 
     // Return the user list to the caller.
-    JsonObjectBuilder responseBuilder = Json.createObjectBuilder().add("users", userArray.build());
-    return Response.ok(responseBuilder.build(), MediaType.APPLICATION_JSON).build();
+    return Response.ok(streamUsers(cursor, limit), MediaType.APPLICATION_JSON).build();
+  }
+
+  /**
+   * Get the profiles of a list of users.
+   *
+   * @param payload A JSON object containing an array of user IDs.
+   * @return The profiles of the users that were found (excluding private fields like password).
+   */
+  @POST
+  @Path("/lookup")
+  @Consumes("application/json")
+  @Produces("application/json")
+  public Response lookupUsers(JsonObject payload) {
+    if (payload == null || !(payload.get(JSON_KEY_IDS) instanceof JsonArray)) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("The payload must contain an array of user IDs.")
+          .build();
+    }
+
+    JsonArray ids = payload.getJsonArray(JSON_KEY_IDS);
+    List<String> idList = new ArrayList<String>(ids.size());
+    for (JsonValue id : ids) {
+      if (id.getValueType() != ValueType.STRING) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The user ID is not valid: " + id)
+            .build();
+      }
+      idList.add(((JsonString) id).getString());
+    }
+    return lookupUsers(idList);
+  }
+
+  /**
+   * Look up a list of users with a single query, and stream back their public profiles.
+   *
+   * @param ids The user IDs.
+   * @return The users that were found, in no particular order. IDs that were not found are left
+   *     out.
+   */
+  private Response lookupUsers(List<String> ids) {
+    // Validate the JWT.  The JWT must belong to the 'users' or 'orchestrator' group,
+    // as for a single user.
+    try {
+      validateJWT(new HashSet<String>(Arrays.asList("users", "orchestrator")));
+    } catch (JWTException jwte) {
+      return Response.status(Status.UNAUTHORIZED)
+          .type(MediaType.TEXT_PLAIN)
+          .entity(jwte.getMessage())
+          .build();
+    }
+
+    if (ids.size() > MAX_LOOKUP_IDS) {
+      return Response.status(Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN)
+          .entity("At most " + MAX_LOOKUP_IDS + " users can be looked up at once.")
+          .build();
+    }
+
+    BasicDBList objectIds = new BasicDBList();
+    for (String id : ids) {
+      String trimmedId = id.trim();
+      if (trimmedId.isEmpty()) {
+        continue;
+      }
+      if (!ObjectId.isValid(trimmedId)) {
+        return Response.status(Status.BAD_REQUEST)
+            .type(MediaType.TEXT_PLAIN)
+            .entity("The user ID is not valid: " + trimmedId)
+            .build();
+      }
+      objectIds.add(new ObjectId(trimmedId));
+    }
+
+    // Leave the private fields out of the query results, not just the response.
+    DB database = mongo.getMongoDB();
+    DBCollection dbCollection = database.getCollection(User.DB_COLLECTION_NAME);
+    DBCursor cursor =
+        dbCollection
+            .find(
+                new BasicDBObject(User.DB_ID, new BasicDBObject("$in", objectIds)),
+                User.getPublicFieldsProjection())
+            .setDecoderFactory(UserDecoder.FACTORY);
+
+    return Response.ok(streamUsers(cursor, 0), MediaType.APPLICATION_JSON).build();
+  }
+
+  /**
+   * Write each user as it is read from the cursor, rather than building the whole list first.
+   *
+   * @param cursor The users to write. It is closed once they have been written.
+   * @param limit The page size, or zero if the users are not paged. If the page is full, the ID of
+   *     the last user is written as "next".
+   * @return The response entity.
+   */
+  private StreamingOutput streamUsers(final DBCursor cursor, final int limit) {
+    return output -> {
+      try (DBCursor dbUsers = cursor) {
+        JsonGenerator generator = Json.createGenerator(output);
+        generator.writeStartObject().writeStartArray(User.DB_COLLECTION_NAME);
+        int count = 0;
+        String lastId = null;
+        while (dbUsers.hasNext()) {
+          JsonObject user = UserDecoder.toUser(dbUsers.next()).getPublicJsonObject();
+          generator.write(user);
+          lastId = user.getString(User.JSON_KEY_USER_ID);
+          count++;
+        }
+        generator.writeEnd();
+        if (limit > 0 && count == limit) {
+          generator.write(JSON_KEY_NEXT, lastId);
+        }
+        generator.writeEnd();
+        generator.flush();
+      }
+    };
   }
 
   /** Allow for a JsonObject to be modified */
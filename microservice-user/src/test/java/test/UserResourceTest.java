@@ -20,6 +20,7 @@ import com.mongodb.MongoClient;
 import java.io.StringReader;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Set;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -449,6 +450,169 @@ public class UserResourceTest {
     }
   }
 
+  /** Tests getting all users a page at a time. */
+  @Test
+  public void testGetAllUserPaged() throws Exception {
+    // Add 3 users.
+    String loginAuthHeader =
+        "Bearer "
+            + new JWTVerifier()
+                .createJWT("unauthenticated", new HashSet<String>(Arrays.asList("login")));
+    String[] userNames = {"nCopernicus", "jKepler", "tBrahe"};
+    String authHeader = null;
+    for (int i = 0; i < userNames.length; i++) {
+      User user =
+          new User(
+              null,
+              "First" + i,
+              "Last" + i,
+              userNames[i],
+              "@" + userNames[i],
+              userNames[i] + "WishListLink",
+              "myPassword");
+      Response response = processRequest(userServiceURL, "POST", user.getJson(), loginAuthHeader);
+      assertEquals(
+          "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+          Status.OK.getStatusCode(),
+          response.getStatus());
+      authHeader = response.getHeaderString("Authorization");
+    }
+
+    // The first page is full, so it says where the next page starts.
+    Response response = processRequest(userServiceURL + "?limit=2", "GET", null, authHeader);
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+    JsonObject page = toJsonObj(response.readEntity(String.class));
+    Set<String> returnedUserNames = new HashSet<String>();
+    JsonArray users = page.getJsonArray(DB_USERS_COLLECTION_NAME);
+    assertEquals("Wrong number of users in the first page.", 2, users.size());
+    for (int i = 0; i < users.size(); i++) {
+      assertFalse("Response contained a password.", users.getJsonObject(i).containsKey("password"));
+      returnedUserNames.add(users.getJsonObject(i).getString(User.JSON_KEY_USER_NAME));
+    }
+    assertTrue("Expected a next page.", page.containsKey("next"));
+
+    // The second page has the last user, and no next page.
+    response =
+        processRequest(
+            userServiceURL + "?limit=2&after=" + page.getString("next"), "GET", null, authHeader);
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+    page = toJsonObj(response.readEntity(String.class));
+    users = page.getJsonArray(DB_USERS_COLLECTION_NAME);
+    assertEquals("Wrong number of users in the second page.", 1, users.size());
+    returnedUserNames.add(users.getJsonObject(0).getString(User.JSON_KEY_USER_NAME));
+    assertFalse("Expected no next page.", page.containsKey("next"));
+
+    assertEquals(
+        "Each user should be returned once.",
+        new HashSet<String>(Arrays.asList(userNames)),
+        returnedUserNames);
+  }
+
+  /** Tests looking up a list of users by ID, with both GET and POST. */
+  @Test
+  public void testBulkLookupUser() throws Exception {
+    // Add 3 users.
+    String loginAuthHeader =
+        "Bearer "
+            + new JWTVerifier()
+                .createJWT("unauthenticated", new HashSet<String>(Arrays.asList("login")));
+    String[] userNames = {"aLovelace", "cBabbage", "aTuring"};
+    String[] dbIds = new String[userNames.length];
+    String authHeader = null;
+    for (int i = 0; i < userNames.length; i++) {
+      User user =
+          new User(
+              null,
+              "First" + i,
+              "Last" + i,
+              userNames[i],
+              "@" + userNames[i],
+              userNames[i] + "WishListLink",
+              "myPassword");
+      Response response = processRequest(userServiceURL, "POST", user.getJson(), loginAuthHeader);
+      assertEquals(
+          "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+          Status.OK.getStatusCode(),
+          response.getStatus());
+      authHeader = response.getHeaderString("Authorization");
+      dbIds[i] = toJsonObj(response.readEntity(String.class)).getString(KEY_USER_ID);
+    }
+
+    // Look up the first and last user with a query parameter.
+    Response response =
+        processRequest(
+            userServiceURL + "?ids=" + dbIds[0] + "," + dbIds[2], "GET", null, authHeader);
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+    assertLookupResult(
+        toJsonObj(response.readEntity(String.class)), new String[] {userNames[0], userNames[2]});
+
+    // Look up the first two users, and one that does not exist, with a POST.
+    String lookupPayload =
+        Json.createObjectBuilder()
+            .add(
+                "ids",
+                Json.createArrayBuilder()
+                    .add(dbIds[0])
+                    .add(dbIds[1])
+                    .add(new ObjectId().toString()))
+            .build()
+            .toString();
+    response = processRequest(userServiceURL + "/lookup", "POST", lookupPayload, authHeader);
+    assertEquals(
+        "HTTP response code should have been " + Status.OK.getStatusCode() + ".",
+        Status.OK.getStatusCode(),
+        response.getStatus());
+    assertLookupResult(
+        toJsonObj(response.readEntity(String.class)), new String[] {userNames[0], userNames[1]});
+
+    // An invalid ID is rejected.
+    response = processRequest(userServiceURL + "?ids=notAnId", "GET", null, authHeader);
+    assertEquals(
+        "HTTP response code should have been " + Status.BAD_REQUEST.getStatusCode() + ".",
+        Status.BAD_REQUEST.getStatusCode(),
+        response.getStatus());
+
+    // So are an ID that is not a string, and a payload without an array of IDs.
+    String[] badPayloads = {
+      Json.createObjectBuilder().add("ids", Json.createArrayBuilder().add(42)).build().toString(),
+      Json.createObjectBuilder().add("ids", "notAnArray").build().toString(),
+      Json.createObjectBuilder().build().toString()
+    };
+    for (String badPayload : badPayloads) {
+      response = processRequest(userServiceURL + "/lookup", "POST", badPayload, authHeader);
+      assertEquals(
+          "HTTP response code should have been " + Status.BAD_REQUEST.getStatusCode() + ".",
+          Status.BAD_REQUEST.getStatusCode(),
+          response.getStatus());
+    }
+  }
+
+  /** Check that a lookup returned exactly the expected users, with no private fields. */
+  private void assertLookupResult(JsonObject result, String[] expectedUserNames) {
+    JsonArray users = result.getJsonArray(DB_USERS_COLLECTION_NAME);
+    assertEquals("Wrong number of users returned.", expectedUserNames.length, users.size());
+    Set<String> returnedUserNames = new HashSet<String>();
+    for (int i = 0; i < users.size(); i++) {
+      JsonObject user = users.getJsonObject(i);
+      assertFalse("Response contained a password.", user.containsKey("password"));
+      assertFalse("Response contained a salt.", user.containsKey("salt"));
+      returnedUserNames.add(user.getString(User.JSON_KEY_USER_NAME));
+    }
+    assertEquals(
+        "Wrong users returned.",
+        new HashSet<String>(Arrays.asList(expectedUserNames)),
+        returnedUserNames);
+  }
+
   public Response processRequest(String url, String method, String payload) {
     return processRequest(url, method, payload, null);
   }
@@ -0,0 +1,234 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.mongo;
+
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import java.lang.management.ManagementFactory;
+import java.net.UnknownHostException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Holds a service's MongoDB client and database, and publishes the state of its connection pool and
+ * indexes.
+ *
+ * <p>Each service extends this with an application scoped bean that names its database and declares
+ * the indexes its queries need. The connection settings are read from MP Config, and the client is
+ * created on first use. The hostname and port are defined in each service's POM, and copied into
+ * Liberty's bootstrap.properties during the build.
+ */
+public abstract class AbstractMongoAccess {
+  private static final String clazz = AbstractMongoAccess.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The name of the database, which also names the client's connection pool. */
+  private final String dbName;
+
+  /** The mongoDB hostname */
+  @Inject
+  @ConfigProperty(name = "mongo.hostname")
+  private String mongoHostname;
+
+  /** The mongoDB port */
+  @Inject
+  @ConfigProperty(name = "mongo.port")
+  private int mongoPort;
+
+  /** The application metric registry, where the pool and index status are published. */
+  @Inject private MetricRegistry metricRegistry;
+
+  /** The most connections to keep open to each server. */
+  @Inject
+  @ConfigProperty(name = "mongo.pool.size", defaultValue = "100")
+  private int poolSize;
+
+  /** The fewest connections to keep open to each server. */
+  @Inject
+  @ConfigProperty(name = "mongo.pool.min.size", defaultValue = "0")
+  private int minPoolSize;
+
+  /** How many threads can wait for a connection, as a multiple of the pool size. */
+  @Inject
+  @ConfigProperty(name = "mongo.pool.wait.queue.multiple", defaultValue = "5")
+  private int waitQueueMultiple;
+
+  /** How long a thread waits for a connection before it gives up. */
+  @Inject
+  @ConfigProperty(name = "mongo.pool.max.wait.ms", defaultValue = "10000")
+  private int maxWaitMillis;
+
+  /** How long to wait for a new connection to open. */
+  @Inject
+  @ConfigProperty(name = "mongo.connect.timeout.ms", defaultValue = "10000")
+  private int connectTimeoutMillis;
+
+  /** How long to wait for a response on an open connection. */
+  @Inject
+  @ConfigProperty(name = "mongo.socket.timeout.ms", defaultValue = "60000")
+  private int socketTimeoutMillis;
+
+  /** Which members of a replica set to read from, for example primary or secondaryPreferred. */
+  @Inject
+  @ConfigProperty(name = "mongo.read.preference", defaultValue = "primary")
+  private String readPreference;
+
+  /** The client, which holds the connection pool. */
+  private MongoClient client = null;
+
+  /** Cached DB reference used by all threads. */
+  private volatile DB database = null;
+
+  /** Creates the indexes that the service's queries need. */
+  private IndexReconciler indexReconciler = null;
+
+  /** @param dbName The name of the database. */
+  protected AbstractMongoAccess(String dbName) {
+    this.dbName = dbName;
+  }
+
+  /**
+   * Declare the indexes that the service's queries need. Called once, the first time the indexes
+   * are needed.
+   *
+   * @param reconciler Where to declare them.
+   */
+  protected abstract void declareIndexes(IndexReconciler reconciler);
+
+  /**
+   * Get a connection to Mongo. The client is created on first use, and after that the database is
+   * returned without taking a lock.
+   */
+  public DB getMongoDB() {
+    DB db = database;
+    if (db == null) {
+      synchronized (this) {
+        db = database;
+        if (db == null) {
+          try {
+            client =
+                new MongoClient(new ServerAddress(mongoHostname, mongoPort), getClientOptions());
+          } catch (UnknownHostException uhe) {
+            throw new RuntimeException(uhe);
+          }
+          db = client.getDB(dbName);
+          database = db;
+        }
+      }
+    }
+
+    return db;
+  }
+
+  /** Build the client options from the configuration. */
+  private MongoClientOptions getClientOptions() {
+    return MongoClientOptions.builder()
+        .description(dbName)
+        .connectionsPerHost(poolSize)
+        .minConnectionsPerHost(minPoolSize)
+        .threadsAllowedToBlockForConnectionMultiplier(waitQueueMultiple)
+        .maxWaitTime(maxWaitMillis)
+        .connectTimeout(connectTimeoutMillis)
+        .socketTimeout(socketTimeoutMillis)
+        .readPreference(ReadPreference.valueOf(readPreference))
+        .build();
+  }
+
+  /**
+   * Publish the connection pool statistics. The driver keeps them in an MBean for each server it
+   * connects to, named with the client's description.
+   */
+  public void registerPoolMetrics(@Observes @Initialized(ApplicationScoped.class) Object context) {
+    metricRegistry.register("mongo.pool.size", (Gauge<Integer>) () -> getPoolStatistic("Size"));
+    metricRegistry.register(
+        "mongo.pool.checkedOut", (Gauge<Integer>) () -> getPoolStatistic("CheckedOutCount"));
+    metricRegistry.register(
+        "mongo.pool.available",
+        (Gauge<Integer>) () -> getPoolStatistic("Size") - getPoolStatistic("CheckedOutCount"));
+    metricRegistry.register(
+        "mongo.pool.waitQueueSize", (Gauge<Integer>) () -> getPoolStatistic("WaitQueueSize"));
+  }
+
+  /** Add up a connection pool statistic over the servers that the client is connected to. */
+  private int getPoolStatistic(String attribute) {
+    int total = 0;
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName pools =
+          new ObjectName("org.mongodb.driver:type=ConnectionPool,description=" + dbName + ",*");
+      for (ObjectName pool : mbeanServer.queryNames(pools, null)) {
+        total += ((Number) mbeanServer.getAttribute(pool, attribute)).intValue();
+      }
+    } catch (JMException jme) {
+      logger.log(Level.FINE, "Could not read the connection pool statistics", jme);
+    }
+    return total;
+  }
+
+  /** Close the client, and with it the connection pool, when the application stops. */
+  @PreDestroy
+  public synchronized void close() {
+    if (client != null) {
+      client.close();
+      client = null;
+      database = null;
+    }
+  }
+
+  /**
+   * Make sure the indexes exist when the application starts, and publish whether each one is ready.
+   * The indexes are built on a background thread, so that the application does not wait for them.
+   */
+  public void createIndexes(@Observes @Initialized(ApplicationScoped.class) Object context) {
+    final IndexReconciler reconciler;
+    try {
+      reconciler = getIndexReconciler();
+    } catch (RuntimeException re) {
+      logger.log(Level.WARNING, "Could not check the indexes of " + dbName, re);
+      return;
+    }
+
+    for (final String index : reconciler.getStatus().keySet()) {
+      metricRegistry.register(
+          "mongo.index." + index + ".ready",
+          (Gauge<Integer>)
+              () -> reconciler.getStatus().get(index) == IndexReconciler.Status.READY ? 1 : 0);
+    }
+
+    Thread thread = new Thread(() -> reconciler.reconcile(), "mongo-index-reconciler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** The indexes that the service's queries need, and whether they have been built. */
+  public synchronized IndexReconciler getIndexReconciler() {
+    if (indexReconciler == null) {
+      IndexReconciler reconciler = new IndexReconciler(getMongoDB());
+      declareIndexes(reconciler);
+      indexReconciler = reconciler;
+    }
+    return indexReconciler;
+  }
+}
@@ -0,0 +1,72 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.mongo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A document to return to the caller as JSON, and the rules for which of its fields to return and
+ * what to call them. The rules apply to the top level fields of the document. {@link
+ * DocumentViewWriter} writes the JSON straight from the BSON of the document.
+ */
+public class DocumentView {
+  private final RawDocument document;
+
+  /** The fields to return, or null to return all of them. */
+  private Set<String> fields = null;
+
+  /** The fields to return under a different name, keyed by their name in the document. */
+  private final Map<String, String> renames = new HashMap<String, String>();
+
+  public DocumentView(RawDocument document) {
+    this.document = document;
+  }
+
+  /** Only return these fields, and any others that are included. */
+  public DocumentView include(String... fields) {
+    return include(Arrays.asList(fields));
+  }
+
+  /** Only return these fields, and any others that are included. */
+  public DocumentView include(Collection<String> fields) {
+    if (this.fields == null) {
+      this.fields = new HashSet<String>();
+    }
+    this.fields.addAll(fields);
+    return this;
+  }
+
+  /** Return a field under a different name. */
+  public DocumentView rename(String field, String name) {
+    renames.put(field, name);
+    return this;
+  }
+
+  public RawDocument getDocument() {
+    return document;
+  }
+
+  /** True if the field should be returned. */
+  public boolean isIncluded(String field) {
+    return fields == null || fields.contains(field);
+  }
+
+  /** The name to return the field under. */
+  public String getName(String field) {
+    String name = renames.get(field);
+    return name == null ? field : name;
+  }
+}
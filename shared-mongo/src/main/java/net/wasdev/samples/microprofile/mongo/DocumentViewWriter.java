@@ -0,0 +1,327 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.mongo;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.bson.io.Bits;
+
+/**
+ * Writes a {@link DocumentView} as JSON, straight from the BSON of the document.
+ *
+ * <p>Each value is written to the response as it is read from the BSON, so no objects are built for
+ * the fields. Object IDs are written as their hex string, and dates as milliseconds since the
+ * epoch. Fields of types that have no JSON equivalent (binary data, regular expressions, code,
+ * timestamps and the like) are left out.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class DocumentViewWriter implements MessageBodyWriter<DocumentView> {
+
+  /**
+   * Looking up the JSON provider, and the buffers of each generator, cost more than writing a small
+   * document, so the factory is shared.
+   */
+  private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  // The BSON element types, see http://bsonspec.org/spec.html
+  private static final byte TYPE_DOUBLE = 0x01;
+  private static final byte TYPE_STRING = 0x02;
+  private static final byte TYPE_DOCUMENT = 0x03;
+  private static final byte TYPE_ARRAY = 0x04;
+  private static final byte TYPE_BINARY = 0x05;
+  private static final byte TYPE_UNDEFINED = 0x06;
+  private static final byte TYPE_OBJECT_ID = 0x07;
+  private static final byte TYPE_BOOLEAN = 0x08;
+  private static final byte TYPE_DATE = 0x09;
+  private static final byte TYPE_NULL = 0x0A;
+  private static final byte TYPE_REGEX = 0x0B;
+  private static final byte TYPE_DB_POINTER = 0x0C;
+  private static final byte TYPE_CODE = 0x0D;
+  private static final byte TYPE_SYMBOL = 0x0E;
+  private static final byte TYPE_CODE_W_SCOPE = 0x0F;
+  private static final byte TYPE_INT32 = 0x10;
+  private static final byte TYPE_TIMESTAMP = 0x11;
+  private static final byte TYPE_INT64 = 0x12;
+  private static final byte TYPE_DECIMAL128 = 0x13;
+  private static final byte TYPE_MIN_KEY = (byte) 0xFF;
+  private static final byte TYPE_MAX_KEY = 0x7F;
+
+  @Override
+  public boolean isWriteable(
+      Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return DocumentView.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(
+      DocumentView view,
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(
+      DocumentView view,
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream)
+      throws IOException {
+    // The generator is closed, so that it gives its buffer back to the factory, but the response
+    // stream is left open for the container to close.
+    try (JsonGenerator generator =
+        GENERATOR_FACTORY.createGenerator(new UnclosableOutputStream(entityStream))) {
+      generator.writeStartObject();
+      writeElements(generator, view.getDocument().getBSON(), 0, false, view);
+      generator.writeEnd();
+    }
+  }
+
+  /**
+   * Write the elements of a document or an array.
+   *
+   * @param generator The generator, which has started the object or array already.
+   * @param bson The BSON.
+   * @param offset Where the document or array starts.
+   * @param array True for an array, whose element names are not written.
+   * @param view The rules for the fields, for the top level document only. Null otherwise.
+   * @return Where the document or array ends.
+   */
+  private static int writeElements(
+      JsonGenerator generator, byte[] bson, int offset, boolean array, DocumentView view) {
+    int end = offset + Bits.readInt(bson, offset);
+    int position = offset + 4;
+    // The elements are followed by a zero byte.
+    while (position < end - 1) {
+      byte type = bson[position++];
+
+      int nameEnd = position;
+      while (bson[nameEnd] != 0) {
+        nameEnd++;
+      }
+      String name = null;
+      if (!array) {
+        name = new String(bson, position, nameEnd - position, StandardCharsets.UTF_8);
+      }
+      position = nameEnd + 1;
+
+      boolean write = true;
+      if (view != null) {
+        write = view.isIncluded(name);
+        name = view.getName(name);
+      }
+      position = writeValue(generator, bson, position, type, name, write);
+    }
+    return end;
+  }
+
+  /**
+   * Write one value.
+   *
+   * @param generator The generator.
+   * @param bson The BSON.
+   * @param position Where the value starts.
+   * @param type The BSON type of the value.
+   * @param name The name to write the value under, or null if it is in an array.
+   * @param write False to skip the value without writing it.
+   * @return Where the value ends.
+   */
+  private static int writeValue(
+      JsonGenerator generator, byte[] bson, int position, byte type, String name, boolean write) {
+    switch (type) {
+      case TYPE_DOUBLE:
+        if (write) {
+          double value = Double.longBitsToDouble(Bits.readLong(bson, position));
+          if (name == null) {
+            generator.write(value);
+          } else {
+            generator.write(name, value);
+          }
+        }
+        return position + 8;
+
+      case TYPE_STRING:
+      case TYPE_SYMBOL:
+        {
+          int length = Bits.readInt(bson, position);
+          if (write) {
+            // The length includes the zero byte that ends the string.
+            String value = new String(bson, position + 4, length - 1, StandardCharsets.UTF_8);
+            if (name == null) {
+              generator.write(value);
+            } else {
+              generator.write(name, value);
+            }
+          }
+          return position + 4 + length;
+        }
+
+      case TYPE_DOCUMENT:
+      case TYPE_ARRAY:
+        if (!write) {
+          return position + Bits.readInt(bson, position);
+        }
+        boolean array = type == TYPE_ARRAY;
+        if (name == null) {
+          if (array) {
+            generator.writeStartArray();
+          } else {
+            generator.writeStartObject();
+          }
+        } else {
+          if (array) {
+            generator.writeStartArray(name);
+          } else {
+            generator.writeStartObject(name);
+          }
+        }
+        position = writeElements(generator, bson, position, array, null);
+        generator.writeEnd();
+        return position;
+
+      case TYPE_OBJECT_ID:
+        if (write) {
+          char[] hex = new char[24];
+          for (int i = 0; i < 12; i++) {
+            int b = bson[position + i] & 0xFF;
+            hex[2 * i] = HEX_DIGITS[b >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0x0F];
+          }
+          String value = new String(hex);
+          if (name == null) {
+            generator.write(value);
+          } else {
+            generator.write(name, value);
+          }
+        }
+        return position + 12;
+
+      case TYPE_BOOLEAN:
+        if (write) {
+          boolean value = bson[position] != 0;
+          if (name == null) {
+            generator.write(value);
+          } else {
+            generator.write(name, value);
+          }
+        }
+        return position + 1;
+
+      case TYPE_DATE:
+      case TYPE_INT64:
+        if (write) {
+          long value = Bits.readLong(bson, position);
+          if (name == null) {
+            generator.write(value);
+          } else {
+            generator.write(name, value);
+          }
+        }
+        return position + 8;
+
+      case TYPE_INT32:
+        if (write) {
+          int value = Bits.readInt(bson, position);
+          if (name == null) {
+            generator.write(value);
+          } else {
+            generator.write(name, value);
+          }
+        }
+        return position + 4;
+
+      case TYPE_NULL:
+        if (write) {
+          if (name == null) {
+            generator.writeNull();
+          } else {
+            generator.writeNull(name);
+          }
+        }
+        return position;
+
+        // The types below have no JSON equivalent, and are skipped.
+      case TYPE_UNDEFINED:
+      case TYPE_MIN_KEY:
+      case TYPE_MAX_KEY:
+        return position;
+
+      case TYPE_BINARY:
+        // The length does not include the subtype byte.
+        return position + 4 + 1 + Bits.readInt(bson, position);
+
+      case TYPE_REGEX:
+        // The pattern and the options, each a zero terminated string.
+        for (int strings = 0; strings < 2; position++) {
+          if (bson[position] == 0) {
+            strings++;
+          }
+        }
+        return position;
+
+      case TYPE_DB_POINTER:
+        return position + 4 + Bits.readInt(bson, position) + 12;
+
+      case TYPE_CODE:
+        return position + 4 + Bits.readInt(bson, position);
+
+      case TYPE_CODE_W_SCOPE:
+        // The length includes the length itself.
+        return position + Bits.readInt(bson, position);
+
+      case TYPE_TIMESTAMP:
+        return position + 8;
+
+      case TYPE_DECIMAL128:
+        return position + 16;
+
+      default:
+        throw new IllegalArgumentException("Unknown BSON type " + type);
+    }
+  }
+
+  /** Passes everything on to the stream, except close, which only flushes it. */
+  private static class UnclosableOutputStream extends FilterOutputStream {
+    UnclosableOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.mongo;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes sure the indexes that the service's queries rely on exist.
+ *
+ * <p>The indexes are declared up front, and {@link #reconcile} creates any that are missing. The
+ * indexes are built in the background, so that the collections can still be used while they build.
+ * The status of each index can be read at any time, so that it can be published.
+ */
+public class IndexReconciler {
+  private static final String clazz = IndexReconciler.class.getName();
+  private static final Logger logger = Logger.getLogger(clazz);
+
+  /** The state of a declared index. */
+  public enum Status {
+    /** The index has not been checked yet. */
+    PENDING,
+    /** The index was missing, and is being built. */
+    BUILDING,
+    /** The index exists. */
+    READY,
+    /** The index could not be checked or built. */
+    FAILED
+  }
+
+  private final DB database;
+
+  /** The declared indexes, in the order they were declared. Guarded by this. */
+  private final Map<String, Index> indexes = new LinkedHashMap<String, Index>();
+
+  public IndexReconciler(DB database) {
+    this.database = database;
+  }
+
+  /**
+   * Declare an index.
+   *
+   * @param collection The collection to index.
+   * @param keys The index keys, for example {groupId: 1, date: 1}.
+   * @param options The index options, for example {unique: true}, or null for none.
+   * @return The name of the index, as MongoDB names it (for example groupId_1_date_1).
+   */
+  public synchronized String declare(String collection, DBObject keys, DBObject options) {
+    Index index = new Index(collection, keys, options);
+    indexes.put(index.getQualifiedName(), index);
+    return index.name;
+  }
+
+  /** Create any declared indexes that do not exist. */
+  public void reconcile() {
+    List<Index> declared;
+    synchronized (this) {
+      declared = new ArrayList<Index>(indexes.values());
+    }
+
+    for (Index index : declared) {
+      try {
+        DBCollection collection = database.getCollection(index.collection);
+        if (exists(collection, index)) {
+          index.status = Status.READY;
+          continue;
+        }
+
+        logger.log(Level.INFO, "Creating index {0}", index.getQualifiedName());
+        index.status = Status.BUILDING;
+        BasicDBObject options = new BasicDBObject("name", index.name);
+        if (index.options != null) {
+          options.putAll(index.options);
+        }
+        options.append("background", Boolean.TRUE);
+        collection.createIndex(index.keys, options);
+        index.status = Status.READY;
+        logger.log(Level.INFO, "Created index {0}", index.getQualifiedName());
+      } catch (RuntimeException re) {
+        // The service still works without the index, just more slowly.
+        index.status = Status.FAILED;
+        logger.log(Level.WARNING, "Could not create index " + index.getQualifiedName(), re);
+      }
+    }
+  }
+
+  /** The status of each declared index, keyed by collection and index name. */
+  public synchronized Map<String, Status> getStatus() {
+    Map<String, Status> status = new LinkedHashMap<String, Status>();
+    for (Map.Entry<String, Index> entry : indexes.entrySet()) {
+      status.put(entry.getKey(), entry.getValue().status);
+    }
+    return Collections.unmodifiableMap(status);
+  }
+
+  /** The status of one declared index, or null if it was not declared. */
+  public synchronized Status getStatus(String collection, String name) {
+    Index index = indexes.get(collection + "." + name);
+    return index == null ? null : index.status;
+  }
+
+  /** True if the collection has an index on the same keys as the declared one. */
+  private static boolean exists(DBCollection collection, Index index) {
+    for (DBObject existing : collection.getIndexInfo()) {
+      if (sameKeys(index.keys, (DBObject) existing.get("key"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compare index keys. The server may return the directions as a different number type than we
+   * declared them with (1.0 rather than 1), so they are compared by value.
+   */
+  private static boolean sameKeys(DBObject declared, DBObject existing) {
+    if (existing == null) {
+      return false;
+    }
+    List<String> declaredFields = new ArrayList<String>(declared.keySet());
+    List<String> existingFields = new ArrayList<String>(existing.keySet());
+    if (!declaredFields.equals(existingFields)) {
+      return false;
+    }
+    for (String field : declaredFields) {
+      Object declaredValue = declared.get(field);
+      Object existingValue = existing.get(field);
+      if (declaredValue instanceof Number && existingValue instanceof Number) {
+        if (((Number) declaredValue).doubleValue() != ((Number) existingValue).doubleValue()) {
+          return false;
+        }
+      } else if (!declaredValue.equals(existingValue)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A declared index. */
+  private static class Index {
+    private final String collection;
+    private final DBObject keys;
+    private final DBObject options;
+    private final String name;
+    private volatile Status status = Status.PENDING;
+
+    Index(String collection, DBObject keys, DBObject options) {
+      this.collection = collection;
+      this.keys = keys;
+      this.options = options;
+
+      // Name the index the way MongoDB would by default.
+      StringBuilder indexName = new StringBuilder();
+      for (String field : keys.keySet()) {
+        if (indexName.length() > 0) {
+          indexName.append('_');
+        }
+        indexName.append(field).append('_').append(keys.get(field));
+      }
+      this.name = indexName.toString();
+    }
+
+    String getQualifiedName() {
+      return collection + "." + name;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// ******************************************************************************
+//  Copyright (c) 2017 IBM Corporation and others.
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  which accompanies this distribution, and is available at
+//  http://www.eclipse.org/legal/epl-v10.html
+//
+//  Contributors:
+//  IBM Corporation - initial API and implementation
+// ******************************************************************************
+package net.wasdev.samples.microprofile.mongo;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import com.mongodb.LazyDBCallback;
+import com.mongodb.LazyDBDecoder;
+import com.mongodb.LazyDBObject;
+import java.io.IOException;
+import java.io.InputStream;
+import org.bson.io.Bits;
+
+/**
+ * A document as MongoDB returned it, still in BSON.
+ *
+ * <p>Read a document this way when it is only passed on to the caller, so that {@link
+ * DocumentViewWriter} can write it out as JSON without building an object for each of its fields
+ * first. Its fields can still be read with {@link #get}, which decodes them as they are asked for.
+ */
+public class RawDocument extends LazyDBObject {
+
+  /** Set this as the decoder of a query to get RawDocuments from it. */
+  public static final DBDecoderFactory FACTORY = RawDocumentDecoder::new;
+
+  private final byte[] bson;
+
+  RawDocument(byte[] bson, DBCollection collection) {
+    super(bson, new LazyDBCallback(collection));
+    this.bson = bson;
+  }
+
+  /** The document, in BSON. */
+  public byte[] getBSON() {
+    return bson;
+  }
+
+  /**
+   * Find one document.
+   *
+   * @param collection The collection to search.
+   * @param query The query.
+   * @param projection The fields to return, or null for all fields.
+   * @return The first document that matches the query, or null if none do.
+   */
+  public static RawDocument findOne(DBCollection collection, DBObject query, DBObject projection) {
+    try (DBCursor cursor =
+        collection.find(query, projection).limit(-1).setDecoderFactory(FACTORY)) {
+      return cursor.hasNext() ? (RawDocument) cursor.next() : null;
+    }
+  }
+
+  /** Reads each document into a byte array, and nothing more. */
+  private static class RawDocumentDecoder extends LazyDBDecoder {
+    @Override
+    public DBObject decode(byte[] bytes, DBCollection collection) {
+      return new RawDocument(bytes, collection);
+    }
+
+    @Override
+    public DBObject decode(InputStream in, DBCollection collection) throws IOException {
+      // The document starts with its length, which includes the length itself.
+      byte[] length = new byte[4];
+      Bits.readFully(in, length);
+      byte[] bytes = new byte[Bits.readInt(length)];
+      System.arraycopy(length, 0, bytes, 0, length.length);
+      Bits.readFully(in, bytes, length.length, bytes.length - length.length);
+      return new RawDocument(bytes, collection);
+    }
+  }
+}